@@ -0,0 +1,67 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.admc.jcreole;
+
+/**
+ * A read-only view of a range of a larger CharSequence, usually the entire
+ * Creole input.
+ * <p>
+ * No characters are copied until toString() is called.
+ * The backing CharSequence must not be modified while a slice of it is in use.
+ * </p>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+class BufferSlice implements CharSequence {
+    private CharSequence source;
+    private int start, length;
+    private String string;
+
+    public BufferSlice(CharSequence source, int start, int length) {
+        if (start < 0 || length < 0 || start + length > source.length())
+            throw new IndexOutOfBoundsException(String.format(
+                    "Slice %d+%d of %d-char buffer",
+                    start, length, source.length()));
+        this.source = source;
+        this.start = start;
+        this.length = length;
+    }
+
+    public int getStart() { return start; }
+
+    public int length() { return length; }
+
+    public char charAt(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException(Integer.toString(i));
+        return source.charAt(start + i);
+    }
+
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length || from > to)
+            throw new IndexOutOfBoundsException(from + ".." + to);
+        return new BufferSlice(source, start + from, to - from);
+    }
+
+    public String toString() {
+        if (string == null)
+            string = source.subSequence(start, start + length).toString();
+        return string;
+    }
+}
@@ -28,6 +28,8 @@ import java.util.Date;
 import java.text.SimpleDateFormat;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileFilter;
@@ -63,11 +65,21 @@ public class CreoleToHtmlHandler
     private String contextPath;
     private ServletContext application;
     private Indexer indexer = new Indexer();
+    // Reuses parsers and scanners across requests.  A JCreole which is not
+    // released because of an exception is just not reused.
+    private JCreoleEngine engine = new JCreoleEngine();
+    // Settings shared by all requests, built once at initialization.
+    private JCreoleConfig config;
     private static SimpleDateFormat isoDateTimeFormatter =
             new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
     private static SimpleDateFormat isoDateFormatter =
             new SimpleDateFormat("yyyy-MM-dd");
     private static Pattern sortParamPattern = Pattern.compile("([-+])(\\w+)");
+    private static final long DEFAULT_PAGE_CACHE_CHARS = 4 * 1024 * 1024;
+    // Rendered pages, by servlet path and sort parameter
+    private PageCache pageCache;
+    // Compiled boilerplates, by path
+    private TemplateCache pageTemplates = new TemplateCache();
 
     {
         indexer.setFilter(new FileFilter() {
@@ -99,7 +111,21 @@ public class CreoleToHtmlHandler
                 creoleRoot.charAt(0) == '/' || creoleRoot.charAt(0) == '\\';
         String autoString = this.application.getInitParameter("autoIndexing");
         autoIndexing = autoString == null || Boolean.parseBoolean(autoString);
+        String cacheString =
+                this.application.getInitParameter("pageCacheChars");
+        pageCache = new PageCache((cacheString == null)
+                ? DEFAULT_PAGE_CACHE_CHARS : Long.parseLong(cacheString));
         //log("Using creoleRoot of '" + creoleRoot + "'");
+
+        /* Set up Creole macros for all pages like this:
+        Expander creoleExpander =
+                new Expander(Expander.PairedDelims.RECTANGULAR);
+        creoleExpander.put("testMacro", "\n\n<<prettyPrint>>\n{{{\n"
+                + "!/bin/bash -p\n\ncp /etc/inittab /tmp\n}}}\n");
+        and pass it to the Builder's setCreoleExpander method.
+        */
+        config = new JCreoleConfig.Builder().setPrivileges(jcreolePrivs)
+                .setInterWikiMapper(this).build();
     }
 
     public void handleRequest(HttpServletRequest req, HttpServletResponse resp)
@@ -117,13 +143,25 @@ public class CreoleToHtmlHandler
             iwLabels.put("home",
                     ((appName == null) ? "Site" : appName) + " Home Page");
         }
-        InputStream bpStream = null;
+        File bpFile = null;  // Nearest boilerplate.html
+        long bpModTime = 0;
         Matcher matcher = servletFilePattern.matcher(servletPathFile.getName());
         if (!matcher.matches())
             throw new ServletException(
                     "Servlet " + getClass().getName()
                     + " only supports servlet paths ending with '.html':  "
                     + servletPathFile.getAbsolutePath());
+        String sortStr = req.getParameter("sort");
+        String cacheKey = (sortStr == null) ? req.getServletPath()
+                : (req.getServletPath() + "?sort=" + sortStr);
+        String cachedPage = pageCache.get(cacheKey);
+        if (cachedPage != null) {
+            resp.setContentType("text/html; charset=UTF-8");
+            resp.getWriter().write(cachedPage);
+            return;
+        }
+        // Every file read or looked for, to validate the cached page
+        final PageCache.Inputs inputs = new PageCache.Inputs();
         File crRootedDir = servletPathFile.getParentFile();
         // crRootedDir is the parent dir of the requested path.
         String pageBaseName = matcher.group(1);
@@ -134,6 +172,7 @@ public class CreoleToHtmlHandler
                 pageBaseName + ".creole");
         // creoleFile is a /-path either absolute or CR-rooted
         InputStream creoleStream = null;
+        addCreoleInput(inputs, creoleFile);
         creoleStream = isRootAbsolute
                 ? (creoleFile.isFile() ? new FileInputStream(creoleFile) : null)
                 : application.getResourceAsStream(creoleFile.getAbsolutePath());
@@ -153,12 +192,14 @@ public class CreoleToHtmlHandler
         if (pageBaseName.equals("index")) {
             File readmeFile =
                     new File(creoleFile.getParentFile(), "readme.creole");
+            addCreoleInput(inputs, readmeFile);
             InputStream readmeStream = isRootAbsolute
                 ? (readmeFile.isFile()? new FileInputStream(readmeFile) : null)
                 : application.getResourceAsStream(readmeFile.getAbsolutePath());
             readmeSb = new StringBuilder("----\n");
             if (readmeStream == null) {
                 readmeSb.append("{{{\n");
+                addResourceInput(inputs, new File(crRootedDir, "readme.txt"));
                 readmeStream = application.getResourceAsStream(
                           new File(crRootedDir, "readme.txt")
                           .getAbsolutePath());
@@ -179,12 +220,15 @@ public class CreoleToHtmlHandler
             // Search from crRootedDir to creoleRoot for auxilliary files
             File curDir = new File((isRootAbsolute ? "" : "/")
                     + creoleRoot + tmpDir.getAbsolutePath());
-            File bpFile = new File(curDir, "boilerplate.html");
-            if (bpStream == null)
-                bpStream = isRootAbsolute
-                        ? (bpFile.isFile() ? new FileInputStream(bpFile) : null)
-                        : application.getResourceAsStream(
-                          bpFile.getAbsolutePath());
+            if (bpFile == null) {
+                File candidate = new File(curDir, "boilerplate.html");
+                bpModTime = addCreoleInput(inputs, candidate);
+                if (isRootAbsolute ? candidate.isFile()
+                        : (application.getResource(
+                        candidate.getAbsolutePath()) != null))
+                    bpFile = candidate;
+            }
+            addResourceInput(inputs, new File(tmpDir, "site.css"));
             url = application.getResource(new File(
                     tmpDir, "site.css").getAbsolutePath());
             if (url != null) cssHrefs.add(0,
@@ -193,6 +237,7 @@ public class CreoleToHtmlHandler
             if (creoleStream == null && inAncestorDir
                     && pageBaseName.equals("index") && autoIndexing) {
                 File indexFile = new File(curDir, "index.creole");
+                addCreoleInput(inputs, indexFile);
                 creoleStream = isRootAbsolute
                         ? (indexFile.isFile()
                           ? new FileInputStream(indexFile): null)
@@ -205,11 +250,12 @@ public class CreoleToHtmlHandler
         if (creoleStream == null)
             throw new ServletException(
                     "Failed to access:  " + creoleFile.getAbsolutePath());
-        if (bpStream == null)
+        if (bpFile == null)
             throw new ServletException("Failed to access 'boilerplate.html' "
                     + "from creole dir or ancestor dir");
         tmpDir = crRootedDir;
         while (tmpDir != null) {
+            addResourceInput(inputs, new File(tmpDir, "jcreole.css"));
             url = application.getResource(new File(
                     tmpDir, "jcreole.css").getAbsolutePath());
             if (url != null) cssHrefs.add(0,
@@ -218,12 +264,34 @@ public class CreoleToHtmlHandler
             tmpDir = tmpDir.getParentFile();
         }
 
-        JCreole jCreole = new JCreole(IOUtil.toString(bpStream));
-        Expander htmlExpander = jCreole.getHtmlExpander();
-        Date now = new Date();
-        htmlExpander.put(
-                "isoDateTime", isoDateTimeFormatter.format(now), false);
-        htmlExpander.put("isoDate", isoDateFormatter.format(now), false);
+        PageTemplate pageTemplate = pageTemplates.get(bpFile, bpModTime);
+        if (pageTemplate == null)
+            pageTemplate = pageTemplates.put(bpFile, bpModTime,
+                    IOUtil.toString(isRootAbsolute
+                    ? new FileInputStream(bpFile)
+                    : application.getResourceAsStream(
+                    bpFile.getAbsolutePath())));
+        JCreole jCreole = engine.leaseForTemplate(config, pageTemplate);
+        final Expander htmlExpander = jCreole.getHtmlExpander();
+        // The suppliers below are only called if the page references them
+        final Date now = new Date();
+        // Pages showing the request time are not cached
+        htmlExpander.putSupplier("isoDateTime", new Expander.ValueSupplier() {
+            public String get() {
+                inputs.setVolatile();
+                synchronized (isoDateTimeFormatter) {
+                    return isoDateTimeFormatter.format(now);
+                }
+            }
+        });
+        htmlExpander.putSupplier("isoDate", new Expander.ValueSupplier() {
+            public String get() {
+                inputs.setVolatile();
+                synchronized (isoDateFormatter) {
+                    return isoDateFormatter.format(now);
+                }
+            }
+        });
         htmlExpander.put("contextPath", contextPath, false);
         htmlExpander.put("pageBaseName", pageBaseName, false);
         htmlExpander.put("pageDirPath", absUrlDirPath, false);
@@ -231,17 +299,27 @@ public class CreoleToHtmlHandler
         if (readmeSb == null) {
             htmlExpander.put("readmeContent", "");
         } else {
-            JCreole readmeJCreole = new JCreole();
-            readmeJCreole.setHtmlExpander(htmlExpander);
-            readmeJCreole.setInterWikiMapper(this);
-            readmeJCreole.setPrivileges(jcreolePrivs);
-            htmlExpander.put("readmeContent", readmeJCreole.postProcess(
-                    readmeJCreole.parseCreole(readmeSb), "\n"), false);
+            final StringBuilder readmeCreole = readmeSb;
+            htmlExpander.putSupplier("readmeContent",
+                    new Expander.ValueSupplier() {
+                public String get() {
+                    JCreole readmeJCreole = engine.lease(config, null);
+                    readmeJCreole.setHtmlExpander(htmlExpander);
+                    try {
+                        return readmeJCreole.postProcess(
+                                readmeJCreole.parseCreole(readmeCreole), "\n");
+                    } catch (IOException ioe) {
+                        throw new RuntimeException(
+                                "Failed to render readme: " + ioe, ioe);
+                    } finally {
+                        engine.release(readmeJCreole);
+                    }
+                }
+            });
         }
         if (fsDirFile != null) {
             FileComparator.SortBy sortBy = FileComparator.SortBy.NAME;
             boolean ascending = true;
-            String sortStr = req.getParameter("sort");
             if (sortStr != null) {
                 Matcher m = sortParamPattern.matcher(sortStr);
                 if (!m.matches())
@@ -256,30 +334,78 @@ public class CreoleToHtmlHandler
                             "Malformatted sort string: " + sortStr);
                 }
             }
-            htmlExpander.put("index", "\n"
-                    + indexer.generateTable(fsDirFile, absUrlDirPath, true,
-                    sortBy, ascending), false);
+            final File indexDir = fsDirFile;
+            final String indexDirPath = absUrlDirPath;
+            final FileComparator.SortBy indexSortBy = sortBy;
+            final boolean indexAscending = ascending;
+            htmlExpander.putSupplier("index", new Expander.ValueSupplier() {
+                public String get() {
+                    inputs.add(indexDir);
+                    File[] files = indexDir.listFiles();
+                    if (files == null) {
+                        // I/O error.  Don't cache whatever the indexer shows.
+                        inputs.setVolatile();
+                    } else {
+                        for (File file : files) inputs.add(file);
+                    }
+                    return "\n" + indexer.generateTable(indexDir,
+                            indexDirPath, true, indexSortBy, indexAscending);
+                }
+            });
             // An alternative for using the Tomcat-like Indexer in a
             // htmlExpander would be to write a Creole table to a
             // creoleExpander.
         }
 
-        /* Set up Creole macros like this:
-        Expander creoleExpander =
-                new Expander(Expander.PairedDelims.RECTANGULAR);
-        creoleExpander.put("testMacro", "\n\n<<prettyPrint>>\n{{{\n"
-                + "!/bin/bash -p\n\ncp /etc/inittab /tmp\n}}}\n");
-        jCreole.setCreoleExpander(creoleExpander);
-        */
-
         if (cssHrefs.size() > 0) jCreole.addCssHrefs(cssHrefs);
-        jCreole.setInterWikiMapper(this);
-        jCreole.setPrivileges(jcreolePrivs);
-        String html = jCreole.postProcess(
-                jCreole.parseCreole(IOUtil.toStringBuilder(creoleStream)), "\n");
         resp.setBufferSize(1024);
-        resp.setContentType("text/html");
-        resp.getWriter().print(html);
+        // Non-ASCII characters are written as-is, to match the boilerplate
+        resp.setContentType("text/html; charset=UTF-8");
+        // Nothing is written unless the Creole parses successfully
+        Reader creoleReader = new InputStreamReader(creoleStream, "UTF-8");
+        // Written straight to the response, copied only while cacheable
+        PageCache.PageWriter pageWriter =
+                pageCache.newPageWriter(resp.getWriter(), inputs);
+        try {
+            jCreole.render(creoleReader, "\n",
+                    (pageWriter == null) ? resp.getWriter() : pageWriter);
+        } finally {
+            creoleReader.close();
+        }
+        engine.release(jCreole);
+        String page = (pageWriter == null) ? null : pageWriter.getPage();
+        if (page != null) pageCache.put(cacheKey, page, inputs);
+    }
+
+    /**
+     * @return the cache of rendered pages, for its statistics
+     * @since 1.4.0
+     */
+    public PageCache getPageCache() {
+        return pageCache;
+    }
+
+    /**
+     * Adds the file at the specified path under the creoleRoot to the
+     * inputs of a page.
+     *
+     * @return the modification time recorded for the file
+     */
+    private long addCreoleInput(PageCache.Inputs inputs, File creolePath) {
+        return isRootAbsolute
+                ? inputs.add(creolePath) : addResourceInput(inputs, creolePath);
+    }
+
+    /**
+     * Adds the file of the specified web app resource path to the inputs of
+     * a page, if it has one.
+     * Resources of a packed war file have none, but they can not change.
+     *
+     * @return the modification time recorded for the file, or 0 if none
+     */
+    private long addResourceInput(PageCache.Inputs inputs, File resPath) {
+        String realPath = application.getRealPath(resPath.getAbsolutePath());
+        return (realPath == null) ? 0 : inputs.add(new File(realPath));
     }
 
     // InterWikiMapper implementation follows
@@ -18,9 +18,25 @@
 package com.admc.jcreole;
 
 import java.util.Comparator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.text.Collator;
+import java.text.CollationKey;
 
 /**
  * Sorts the toString() of elements in same order as a dictionary.
+ * <p>
+ * Strings are ordered case-insensitively, with ties broken by length, and
+ * then so that lower-case sorts before upper-case.
+ * If a Collator is given, the Collator order replaces the case-insensitive
+ * comparison, and the same tie-breakers are used for strings which the
+ * Collator considers equal.
+ * </p>
+ * <p>
+ * For sorting more than a few elements, use the sort(List) method, which
+ * computes the sort keys of each element only once.
+ * </p>
  *
  * @author Blaine Simpson (blaine dot simpson at admc dot com)
  * @since 1.1
@@ -29,6 +45,21 @@ public class DictionaryComparator implements Comparator<Object> {
     public static final DictionaryComparator singleton =
             new DictionaryComparator();
 
+    private Collator collator;
+
+    public DictionaryComparator() {
+        // Intentionally empty
+    }
+
+    /**
+     * @param collator  Locale-aware primary ordering.
+     *        Null for the default case-insensitive ordering.
+     * @since 1.4.0
+     */
+    public DictionaryComparator(Collator collator) {
+        this.collator = (collator == null) ? null : (Collator) collator.clone();
+    }
+
     public int compare(Object o1, Object o2) {
         if (o1 == null && o2 == null) return 0;
         if (o1 == null) return -1;
@@ -36,10 +67,22 @@ public class DictionaryComparator implements Comparator<Object> {
 
         String s1 = o1.toString();
         String s2 = o2.toString();
+        if (collator != null) {
+            // Collator.compare does not always agree with CollationKeys,
+            // so we use CollationKeys here too, for the same order as sort.
+            int delta;
+            synchronized (collator) {
+                delta = collator.getCollationKey(s1)
+                        .compareTo(collator.getCollationKey(s2));
+            }
+            if (delta != 0) return delta;
+        }
+        return compare(s1, s1.toLowerCase(), s2, s2.toLowerCase());
+    }
+
+    private static int compare(String s1, String is1, String s2, String is2) {
         int len1 = s1.length();
         int len2 = s2.length();
-        String is1 = s1.toLowerCase();
-        String is2 = s2.toLowerCase();
         int delta;
 
         for (int i = 0; i < len1 && i < len2; i++) {
@@ -53,4 +96,56 @@ public class DictionaryComparator implements Comparator<Object> {
         }
         return 0;
     }
+
+    /**
+     * Sorts the list in the same order as Collections.sort(list, this)
+     * would, but computes the toString(), the lower-case form, and any
+     * CollationKey of each element just once.
+     * <p>
+     * Null elements are not permitted.
+     * </p>
+     *
+     * @since 1.4.0
+     */
+    public <T> void sort(List<T> list) {
+        SortKey[] keys = new SortKey[list.size()];
+        int i = 0;
+        if (collator == null) {
+            for (T element : list) keys[i++] = new SortKey(element, null);
+        } else synchronized (collator) {
+            for (T element : list) keys[i++] = new SortKey(
+                    element, collator.getCollationKey(element.toString()));
+        }
+        Arrays.sort(keys);
+        ListIterator<T> it = list.listIterator();
+        for (SortKey key : keys) {
+            it.next();
+            @SuppressWarnings("unchecked")
+            T element = (T) key.element;
+            it.set(element);
+        }
+    }
+
+    private static class SortKey implements Comparable<SortKey> {
+        private Object element;
+        private String string;
+        private String lowerString;
+        private CollationKey collationKey;
+
+        private SortKey(Object element, CollationKey collationKey) {
+            this.element = element;
+            this.collationKey = collationKey;
+            string = element.toString();
+            lowerString = string.toLowerCase();
+        }
+
+        public int compareTo(SortKey other) {
+            if (collationKey != null) {
+                int delta = collationKey.compareTo(other.collationKey);
+                if (delta != 0) return delta;
+            }
+            return DictionaryComparator.compare(
+                    string, lowerString, other.string, other.lowerString);
+        }
+    }
 }
@@ -38,7 +38,7 @@ class DtSymbol extends Token {
         // Get rid of extra newline:
         this.content = (content.length() > 0
                 && content.charAt(content.length()-1) == '\n')
-                ? content.substring(content.length()-1) : content;
+                ? content.substring(0, content.length()-1) : content;
         if (this.content.length() < 1)
             throw new IllegalArgumentException(
                     "Empty def list items prohibited");
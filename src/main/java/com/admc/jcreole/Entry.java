@@ -28,12 +28,20 @@ public class Entry implements Comparable<Entry> {
         return compareTo((Entry) o) == 0;
     }
 
+    /**
+     * Consistent with equals, but changes when the label changes, so
+     * Entries should not be used as hash keys.
+     */
+    public int hashCode() {
+        return (label == null) ? entryId : label.hashCode();
+    }
+
     public int compareTo(Entry other) {
         if (other == null) return 1;
         if (other == this) return 0;
         if (this.label == null && other.label == null)
-            return Integer.valueOf(this.entryId)
-                    .compareTo(Integer.valueOf(other.entryId));
+            return (entryId < other.entryId)
+                    ? -1 : ((entryId == other.entryId) ? 0 : 1);
         if (this.label == null) return -1;
         if (other.label == null) return 1;
         return this.label.compareTo(other.label);
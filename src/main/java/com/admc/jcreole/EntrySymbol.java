@@ -37,8 +37,13 @@ class EntrySymbol extends WashedSymbol {
     /**
      * Sandwiches content between binary control characters STX and ETX.
      */
-    public String toString() {
-        return "\u0002" + ((eType == EntryType.MASTERDEF) ? 'D' : 'F')
-                + name + '\n' + super.toString() + '\u0003';
+    public StringBuilder appendTo(StringBuilder sb) {
+        sb.append('\u0002').append((eType == EntryType.MASTERDEF) ? 'D' : 'F')
+                .append(name).append('\n');
+        return appendContentTo(sb).append('\u0003');
+    }
+
+    public int length() {
+        return super.length() + name.length() + 4;
     }
 }
@@ -21,17 +21,25 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Collections;
 import java.text.SimpleDateFormat;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.File;
+import java.io.Writer;
+import java.io.Reader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.BufferedWriter;
+import java.io.StringWriter;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.SystemUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import com.admc.util.IOUtil;
 import com.admc.util.Expander;
+import com.admc.util.EolWriter;
 
 /**
  * Generates HTML fragments from supplied Creole wikitext, optionally making a
@@ -115,12 +123,16 @@ public class JCreole {
         + "Output is always written with UTF-8 encoding.";
 
     protected CreoleParser parser = new CreoleParser();
-    private CharSequence pageBoilerPlate;
+    // Scanners are reused to avoid reallocating buffers.
+    // Package-private so that JCreoleEngine can reclaim them.
+    CreoleScanner scanner;
+    UntrackedCreoleScanner untrackedScanner;
+    private boolean trackPositions = true;
+    private PageTemplate pageTemplate;
     private Expander creoleExpander;
-    private Expander htmlExpander = new Expander(Expander.PairedDelims.CURLY);
-    private List<String> cssHrefs;
-    private Expander framingExpander =
-            new Expander(Expander.PairedDelims.ROUNDED);
+    private Expander htmlExpander;
+    List<String> cssHrefs;  // Cleared by JCreoleEngine.release()
+    private Expander framingExpander;
 
     /**
      * Returns reference to the Framing Expander.
@@ -277,10 +289,22 @@ public class JCreole {
         }
         jCreole.setPrivileges(EnumSet.allOf(JCreolePrivilege.class));
         Expander exp = jCreole.getHtmlExpander();
-        Date now = new Date();
-        exp.putAll("sys", System.getProperties(), false);
-        exp.put("isoDateTime", isoDateTimeFormatter.format(now), false);
-        exp.put("isoDate", isoDateFormatter.format(now), false);
+        final Date now = new Date();
+        exp.putResolver("sys", new Expander.NamespaceResolver() {
+            public String resolve(String name) {
+                return System.getProperty(name);
+            }
+        });
+        exp.putSupplier("isoDateTime", new Expander.ValueSupplier() {
+            public String get() {
+                return isoDateTimeFormatter.format(now);
+            }
+        });
+        exp.putSupplier("isoDate", new Expander.ValueSupplier() {
+            public String get() {
+                return isoDateFormatter.format(now);
+            }
+        });
         exp.put("pageTitle", (inFile == null)
                 ? creoleResPath.replaceFirst("[.][^.]*$", "")
                     .replaceFirst(".*[/\\\\.]", "")
@@ -340,15 +364,134 @@ public class JCreole {
      * manage HTML page construction with a Boilerplate.
      */
     public JCreole() {
-        // Intentionally empty
+        this(null, null, new CreoleParser(), null, null);
     }
 
     public JCreole(String rawBoilerPlate) {
+        this(null, new PageTemplate(toBoilerPlate(rawBoilerPlate)),
+                new CreoleParser(), null, null);
+    }
+
+    /**
+     * Instantiates a session for rendering pages with the specified shared
+     * configuration.
+     * <p>
+     * Nothing is copied from the config.
+     * The HTML and Framing Expanders of the new instance start out empty,
+     * falling back to the mappings of the config, so values put into them
+     * apply only to this instance.
+     * Setter methods likewise affect only this instance.
+     * </p>
+     *
+     * @param rawBoilerPlate  Boilerplate to use instead of that of the config,
+     *                        or null to use that of the config (if any).
+     */
+    public JCreole(JCreoleConfig config, String rawBoilerPlate) {
+        this(config, (rawBoilerPlate == null)
+                ? null : new PageTemplate(toBoilerPlate(rawBoilerPlate)),
+                new CreoleParser(), null, null);
+    }
+
+    /**
+     * For JCreoleEngine and the public constructors.
+     * Uses the specified parser, and the specified scanners if not null.
+     *
+     * @param config  null for default settings
+     * @param pageTemplate  null for that of the config (if any)
+     */
+    JCreole(JCreoleConfig config, PageTemplate pageTemplate,
+            CreoleParser parser, CreoleScanner scanner,
+            UntrackedCreoleScanner untrackedScanner) {
+        this.parser = parser;
+        this.scanner = scanner;
+        this.untrackedScanner = untrackedScanner;
+        this.pageTemplate = pageTemplate;
+        if (config == null) {
+            htmlExpander = new Expander(Expander.PairedDelims.CURLY);
+            framingExpander = new Expander(Expander.PairedDelims.ROUNDED);
+            return;
+        }
+        if (pageTemplate == null)
+            this.pageTemplate = config.getPageTemplate();
+        // A copy, so changing this session's privileges affects no other
+        parser.setPrivileges(config.getPrivileges());
+        if (config.getEnumSymbols(true) != null)
+            parser.setEnumSymbols(config.getEnumSymbols(true), true);
+        if (config.getEnumSymbols(false) != null)
+            parser.setEnumSymbols(config.getEnumSymbols(false), false);
+        parser.setInterWikiMapper(config.getInterWikiMapper());
+        if (config.getCssHrefs().size() > 0) cssHrefs = config.getCssHrefs();
+        creoleExpander = config.getCreoleExpander();
+        htmlExpander = new Expander(config.getHtmlExpander());
+        framingExpander = new Expander(config.getFramingExpander());
+    }
+
+    static String toBoilerPlate(String rawBoilerPlate) {
         if (rawBoilerPlate.indexOf("$(pageContent)") < 0
                 && rawBoilerPlate.indexOf("$(!pageContent)") < 0)
             throw new IllegalArgumentException("Boilerplate contains "
                     + "neither $(pageContent) nor $(!pageContent)");
-        pageBoilerPlate = rawBoilerPlate.replace("\r", "");
+        return rawBoilerPlate.replace("\r", "");
+    }
+
+    /**
+     * Whether to use the normal CreoleScanner, which tracks line, column,
+     * and offset of every token so that problems can be reported with their
+     * source location.
+     * <p>
+     * Set this to false for content known to be good, like content that was
+     * validated when saved, to parse with the faster UntrackedCreoleScanner.
+     * If parsing fails, the input is then re-parsed with position tracking so
+     * that the resulting exception reports the problem location as usual.
+     * </p> <p>
+     * Defaults to true.
+     * </p>
+     */
+    public void setTrackPositions(boolean trackPositions) {
+        this.trackPositions = trackPositions;
+    }
+
+    public boolean getTrackPositions() {
+        return trackPositions;
+    }
+
+    private void resetScanner(StringBuilder sb, boolean doClean)
+            throws IOException {
+        if (scanner == null)
+            scanner = CreoleScanner.newCreoleScanner(
+                    sb, doClean, creoleExpander);
+        else
+            scanner.reset(sb, doClean, creoleExpander);
+        parser.setMarkTags(scanner.hasTagDirectives());
+    }
+
+    private void resetUntrackedScanner(StringBuilder sb, boolean doClean)
+            throws IOException {
+        if (untrackedScanner == null)
+            untrackedScanner = UntrackedCreoleScanner.newCreoleScanner(
+                    sb, doClean, creoleExpander);
+        else
+            untrackedScanner.reset(sb, doClean, creoleExpander);
+        parser.setMarkTags(untrackedScanner.hasTagDirectives());
+    }
+
+    /**
+     * Parses with the untracked scanner, which must already have been reset.
+     *
+     * @return the parse result, or null if parsing failed, in which case the
+     *         parser has been reset for re-parsing.
+     */
+    private Object parseUntracked() throws IOException {
+        try {
+            return parser.parse(untrackedScanner);
+        } catch (beaver.Parser.Exception bpe) {
+            // Fall through to re-parse
+        } catch (RuntimeException rte) {
+            // Fall through to re-parse
+        }
+        log.debug("Untracked parse failed.  Re-parsing with position tracking");
+        parser.reset();
+        return null;
     }
 
     /**
@@ -356,6 +499,8 @@ public class JCreole {
      * Wikitext.
      * You don't need to worry about \r's in input, as they will automatically
      * be stripped if present.
+     * Each call starts a new document, so an instance may be reused for any
+     * number of documents, one at a time.
      * (We will, however, throw if binary characters are detected in input).
      *
      * @throws CreoleParseException
@@ -367,23 +512,35 @@ public class JCreole {
      *         Creole source, if any).
      */
     public String parseCreole(StringBuilder sb) throws IOException {
+        return parse(sb).toString();
+    }
+
+    /**
+     * Same as parseCreole(StringBuilder), but returns the fragment without
+     * flattening it into a String.
+     */
+    private WashedSymbol parse(StringBuilder sb) throws IOException {
         if (sb == null || sb.length() < 1)
             throw new IllegalArgumentException("No input supplied");
-        CreoleScanner scanner =
-                CreoleScanner.newCreoleScanner(sb, true, creoleExpander);
-        // using a named instance so we can enhance this to set scanner
-        // instance properties.
+        parser.reset();
         Object retVal = null;
-        try {
-            retVal = parser.parse(scanner);
-        } catch (CreoleParseException cpe) {
-            throw cpe;
-        } catch (beaver.Parser.Exception bpe) {
-            throw new CreoleParseException(bpe);
-        } catch (RuntimeException rte) {
-            log.error("Unexpected problem.  Passing RuntimeException to caller",
-                    rte);
-            throw new CreoleParseException("Unexpected problem", rte);
+        if (!trackPositions) {
+            resetUntrackedScanner(sb, true);
+            retVal = parseUntracked();
+        }
+        if (retVal == null) {
+            resetScanner(sb, true);
+            try {
+                retVal = parser.parse(scanner);
+            } catch (CreoleParseException cpe) {
+                throw cpe;
+            } catch (beaver.Parser.Exception bpe) {
+                throw new CreoleParseException(bpe);
+            } catch (RuntimeException rte) {
+                log.error("Unexpected problem.  "
+                        + "Passing RuntimeException to caller", rte);
+                throw new CreoleParseException("Unexpected problem", rte);
+            }
         }
         if (!(retVal instanceof WashedSymbol)) {
             log.error("Parser returned unexpected type "
@@ -392,7 +549,7 @@ public class JCreole {
                     "Parser returned unexpected type: "
                     + retVal.getClass().getName());
         }
-        return ((WashedSymbol) retVal).toString();
+        return (WashedSymbol) retVal;
     }
 
     /**
@@ -400,6 +557,8 @@ public class JCreole {
      * Wikitext file.
      * You don't need to worry about \r's in input, as they will automatically
      * be stripped if present.
+     * Each call starts a new document, so an instance may be reused for any
+     * number of documents, one at a time.
      * (The will, however, throw if binary characters are detected in input).
      *
      * @throws if can not generate output, or if the run generates 0 output.
@@ -412,17 +571,31 @@ public class JCreole {
     public String parseCreole(File creoleFile) throws IOException {
         if (creoleFile == null || creoleFile.length() < 1)
             throw new IllegalArgumentException("No input supplied");
-        CreoleScanner scanner = CreoleScanner.newCreoleScanner(
-                creoleFile, false, creoleExpander);
-        // using a named instance so we can enhance this to set scanner
-        // instance properties.
+        parser.reset();
         Object retVal = null;
-        try {
-            retVal = parser.parse(scanner);
-        } catch (CreoleParseException cpe) {
-            throw cpe;
-        } catch (beaver.Parser.Exception bpe) {
-            throw new CreoleParseException(bpe);
+        if (!trackPositions) {
+            if (untrackedScanner == null)
+                untrackedScanner = UntrackedCreoleScanner.newCreoleScanner(
+                        creoleFile, false, creoleExpander);
+            else
+                untrackedScanner.reset(creoleFile, false, creoleExpander);
+            parser.setMarkTags(untrackedScanner.hasTagDirectives());
+            retVal = parseUntracked();
+        }
+        if (retVal == null) {
+            if (scanner == null)
+                scanner = CreoleScanner.newCreoleScanner(
+                        creoleFile, false, creoleExpander);
+            else
+                scanner.reset(creoleFile, false, creoleExpander);
+            parser.setMarkTags(scanner.hasTagDirectives());
+            try {
+                retVal = parser.parse(scanner);
+            } catch (CreoleParseException cpe) {
+                throw cpe;
+            } catch (beaver.Parser.Exception bpe) {
+                throw new CreoleParseException(bpe);
+            }
         }
         if (!(retVal instanceof WashedSymbol))
             throw new IllegalStateException(
@@ -464,38 +637,105 @@ public class JCreole {
      */
     public String postProcess(String htmlFrag, String outputEol)
             throws IOException {
-        String htmlString = null;
-        if (pageBoilerPlate == null) {
-            htmlString = htmlFrag;
-        } else {
-            StringBuilder html = new StringBuilder(pageBoilerPlate);
-            if (html.indexOf("$(pageHeaders)") > -1
-                    || html.indexOf("$(!pageHeaders)") > -1) {
-                StringBuilder sb = new StringBuilder();
-                int count = 0;
-                for (String href : getCssHrefs())
-                    sb.append(String.format(
-                            "<link id=\"auto%02d\" class=\"auto\" "
-                            + "rel=\"stylesheet\" "
-                            + "type=\"text/css\" href=\"%s\" />\n",
-                            ++count, href));
-                if (getDefaultTargetWindow() != null)
-                    sb.append(String.format("<base target=\"%s\">\n",
-                      getDefaultTargetWindow()));
-                framingExpander.put("pageHeaders", sb.toString(), false);
-            } else if (getCssHrefs().size() > 0
-              || getDefaultTargetWindow() != null) {
-                throw new CreoleParseException(
-                  "Author-supplied style-sheets or default target window, "
-                  + "but boilerplate has no 'pageHeaders' insertion-point");
-            }
-            framingExpander.put("pageContent", htmlFrag, false);
-            htmlString = framingExpander.expand(html).toString();
+        StringWriter writer = new StringWriter(htmlFrag.length()
+                + ((pageTemplate == null) ? 256 : 8192));
+        postProcess(htmlFrag, outputEol, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Same as postProcess(String, String), but writes the page to the
+     * specified Writer as it is generated, without building the page in
+     * memory.
+     * <p>
+     * If an exception is thrown, some output may have been written already.
+     * </p>
+     *
+     * @see #postProcess(String, String)
+     * @since 1.4.0
+     */
+    public void postProcess(String htmlFrag, String outputEol, Writer out)
+            throws IOException {
+        postProcess(Collections.singletonList(htmlFrag), outputEol, out);
+    }
+
+    /**
+     * Parses the Creole read from the specified Reader, and writes the page
+     * (or just the HTML fragment if there is no page boilerplate) to the
+     * specified Writer, just like postProcess(String, String, Writer) would
+     * for the output of parseCreole.
+     * <p>
+     * The parsed document is not flattened into a String, and the page is
+     * not built in memory.
+     * The output is written as views of the parser's buffer, with the
+     * generated TOCs, footnotes, master definition lists and indexes, which
+     * depend upon the entire document, written in between.
+     * </p> <p>
+     * Nothing is written if the input can not be parsed.
+     * The Reader is not closed.
+     * </p>
+     *
+     * @param outputEol  Line delimiters for output.  Null to leave as \n's.
+     * @see #parseCreole(StringBuilder)
+     * @see #postProcess(String, String, Writer)
+     * @since 1.4.0
+     */
+    public void render(Reader in, String outputEol, Writer out)
+            throws IOException {
+        postProcess(parse(IOUtil.toStringBuilder(in)).addPartsTo(
+                new ArrayList<CharSequence>()), outputEol, out);
+    }
+
+    /**
+     * Same as render(Reader, String, Writer), but writes UTF-8 to the
+     * specified OutputStream.
+     * The OutputStream is flushed but not closed.
+     *
+     * @see #render(Reader, String, Writer)
+     * @since 1.4.0
+     */
+    public void render(Reader in, String outputEol, OutputStream out)
+            throws IOException {
+        Writer writer =
+                new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        render(in, outputEol, writer);
+        writer.flush();
+    }
+
+    /**
+     * @param fragParts  The HTML fragment, in parts
+     */
+    private void postProcess(List<? extends CharSequence> fragParts,
+            String outputEol, Writer out) throws IOException {
+        if (pageTemplate == null) {
+            Writer textOut = new EolWriter(out, outputEol);
+            Expander.Memos memos = new Expander.Memos();
+            for (CharSequence part : fragParts)
+                htmlExpander.expand(part, textOut, out, memos);
+            return;
+        }
+        String pageHeaders = null;
+        if (pageTemplate.hasPageHeaders()) {
+            StringBuilder sb = new StringBuilder();
+            int count = 0;
+            for (String href : getCssHrefs())
+                sb.append(String.format(
+                        "<link id=\"auto%02d\" class=\"auto\" "
+                        + "rel=\"stylesheet\" "
+                        + "type=\"text/css\" href=\"%s\" />\n",
+                        ++count, href));
+            if (getDefaultTargetWindow() != null)
+                sb.append(String.format("<base target=\"%s\">\n",
+                  getDefaultTargetWindow()));
+            pageHeaders = sb.toString();
+        } else if (getCssHrefs().size() > 0
+          || getDefaultTargetWindow() != null) {
+            throw new CreoleParseException(
+              "Author-supplied style-sheets or default target window, "
+              + "but boilerplate has no 'pageHeaders' insertion-point");
         }
-        if (outputEol != null && !outputEol.equals("\n"))
-            htmlString = htmlString.replace("\n", outputEol);
-            // Amazing that StringBuilder can't do a multi-replace like this
-        return htmlExpand(htmlString);
+        pageTemplate.render(out, outputEol, pageHeaders, fragParts,
+                framingExpander, htmlExpander);
     }
 
     public String htmlExpand(String htmlString) {
@@ -588,9 +828,16 @@ public class JCreole {
         return outCssHrefs;
     }
 
+    /**
+     * Adds to the explicitly set cssHrefs, which follow those of the
+     * JCreoleConfig, if any.
+     */
     public void addCssHrefs(List<String> newCssHrefs) {
         // Used by servlets
-        cssHrefs = new ArrayList<String>(newCssHrefs);
+        List<String> newList = (cssHrefs == null)
+                ? (new ArrayList<String>()) : (new ArrayList<String>(cssHrefs));
+        newList.addAll(newCssHrefs);
+        cssHrefs = newList;
     }
 
     /**
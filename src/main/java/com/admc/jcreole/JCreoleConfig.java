@@ -0,0 +1,243 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import com.admc.util.Expander;
+
+/**
+ * Immutable JCreole settings, to be built once and then shared by any number
+ * of threads.
+ * <p>
+ * Settings which are the same for every page, like privileges, enumeration
+ * symbols, the InterWikiMapper, style sheets, boilerplate, and Expander
+ * mappings, are validated and copied once when the config is built.
+ * A JCreole instantiated with a config (or leased from a JCreoleEngine with
+ * one) is a lightweight session for rendering one page at a time.
+ * Its Expanders start empty but fall back to the config's mappings, so only
+ * values specific to the page, like dates and titles, need to be put
+ * for each page.
+ * </p><p>
+ * Build like <PRE>
+ *    JCreoleConfig config = new JCreoleConfig.Builder()
+ *            .setPrivileges(privs).setInterWikiMapper(mapper).build();
+ * </PRE>
+ * </p>
+ *
+ * @see JCreole#JCreole(JCreoleConfig, String)
+ * @see JCreoleEngine#lease(JCreoleConfig, String)
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public final class JCreoleConfig {
+    /**
+     * Accumulates settings for a JCreoleConfig.
+     * A Builder is not thread-safe, but it may be used to build any number
+     * of configs, since build() copies everything that is mutable.
+     */
+    public static class Builder {
+        private String boilerPlate;
+        private EnumSet<JCreolePrivilege> jcreolePrivs =
+                CreoleParser.DEFAULT_PLUGIN_PRIVILEGES;
+        private String sectEnumSymbols, listEnumSymbols;
+        private InterWikiMapper interWikiMapper;
+        private List<String> cssHrefs = new ArrayList<String>();
+        private Expander creoleExpander;
+        private Expander htmlExpander =
+                new Expander(Expander.PairedDelims.CURLY);
+        private Expander framingExpander =
+                new Expander(Expander.PairedDelims.ROUNDED);
+
+        /**
+         * @param rawBoilerPlate  null for no boilerplate
+         * @see JCreole#JCreole(String)
+         */
+        public Builder setBoilerPlate(String rawBoilerPlate) {
+            boilerPlate = (rawBoilerPlate == null)
+                    ? null : JCreole.toBoilerPlate(rawBoilerPlate);
+            return this;
+        }
+
+        /**
+         * @see CreoleParser#setPrivileges(EnumSet)
+         */
+        public Builder setPrivileges(EnumSet<JCreolePrivilege> jcreolePrivs) {
+            if (jcreolePrivs == null)
+                throw new NullPointerException("jcreolePrivs may not be null");
+            this.jcreolePrivs = jcreolePrivs;
+            return this;
+        }
+
+        /**
+         * @param forSection
+         *        If true apply to sections; if false apply to ordered lists.
+         * @see CreoleParser#setEnumSymbols(String, boolean)
+         */
+        public Builder setEnumSymbols(String symbolString, boolean forSection) {
+            if (symbolString == null)
+                throw new NullPointerException(
+                        "symbolString may not be null");
+            if (!CreoleParser.EnumSymbolsPattern.matcher(symbolString)
+                    .matches())
+                throw new IllegalArgumentException(
+                        "Malformatted symbolString: " + symbolString);
+            if (forSection)
+                sectEnumSymbols = symbolString;
+            else
+                listEnumSymbols = symbolString;
+            return this;
+        }
+
+        /**
+         * The InterWikiMapper will be used concurrently by all threads
+         * rendering with the built config, so it must be thread-safe.
+         *
+         * @see CreoleParser#setInterWikiMapper(InterWikiMapper)
+         */
+        public Builder setInterWikiMapper(InterWikiMapper interWikiMapper) {
+            this.interWikiMapper = interWikiMapper;
+            return this;
+        }
+
+        public Builder addCssHrefs(List<String> newCssHrefs) {
+            cssHrefs.addAll(newCssHrefs);
+            return this;
+        }
+
+        /**
+         * @param creoleExpander  null (the default) for no Creole expansion
+         * @see JCreole#setCreoleExpander(Expander)
+         */
+        public Builder setCreoleExpander(Expander creoleExpander) {
+            this.creoleExpander = creoleExpander;
+            return this;
+        }
+
+        /**
+         * Returns reference to the HTML Expander to be copied into configs
+         * built from here on.
+         */
+        public Expander getHtmlExpander() {
+            return htmlExpander;
+        }
+
+        /**
+         * Returns reference to the Framing Expander to be copied into configs
+         * built from here on.
+         */
+        public Expander getFramingExpander() {
+            return framingExpander;
+        }
+
+        public JCreoleConfig build() {
+            return new JCreoleConfig(this);
+        }
+    }
+
+    private final String boilerPlate;
+    private final PageTemplate pageTemplate;
+    private final EnumSet<JCreolePrivilege> jcreolePrivs;
+    private final String sectEnumSymbols, listEnumSymbols;
+    private final InterWikiMapper interWikiMapper;
+    private final List<String> cssHrefs;
+    private final Expander creoleExpander, htmlExpander, framingExpander;
+
+    private JCreoleConfig(Builder builder) {
+        boilerPlate = builder.boilerPlate;
+        pageTemplate = (boilerPlate == null)
+                ? null : new PageTemplate(boilerPlate);
+        jcreolePrivs = EnumSet.copyOf(builder.jcreolePrivs);
+        sectEnumSymbols = builder.sectEnumSymbols;
+        listEnumSymbols = builder.listEnumSymbols;
+        interWikiMapper = builder.interWikiMapper;
+        cssHrefs = Collections.unmodifiableList(
+                new ArrayList<String>(builder.cssHrefs));
+        creoleExpander = (builder.creoleExpander == null)
+                ? null : builder.creoleExpander.copy();
+        htmlExpander = builder.htmlExpander.copy();
+        framingExpander = builder.framingExpander.copy();
+    }
+
+    /**
+     * @return the cleaned boilerplate, or null if none
+     */
+    public String getBoilerPlate() {
+        return boilerPlate;
+    }
+
+    /**
+     * @return the boilerplate compiled once for all sessions, or null if none
+     */
+    PageTemplate getPageTemplate() {
+        return pageTemplate;
+    }
+
+    /**
+     * Returns a copy of the privileges.
+     */
+    public EnumSet<JCreolePrivilege> getPrivileges() {
+        return EnumSet.copyOf(jcreolePrivs);
+    }
+
+    /**
+     * @return null if the parser default is to be used
+     */
+    public String getEnumSymbols(boolean forSection) {
+        return forSection ? sectEnumSymbols : listEnumSymbols;
+    }
+
+    public InterWikiMapper getInterWikiMapper() {
+        return interWikiMapper;
+    }
+
+    /**
+     * @return unmodifiable list
+     */
+    public List<String> getCssHrefs() {
+        return cssHrefs;
+    }
+
+    /**
+     * Sessions use this Expander itself, since Creole expansion mappings
+     * are never page-specific.
+     * The returned Expander must not be modified.
+     */
+    Expander getCreoleExpander() {
+        return creoleExpander;
+    }
+
+    /**
+     * The returned Expander must not be modified.
+     * Sessions put page-specific values into child Expanders of it.
+     */
+    Expander getHtmlExpander() {
+        return htmlExpander;
+    }
+
+    /**
+     * The returned Expander must not be modified.
+     * Sessions put page-specific values into child Expanders of it.
+     */
+    Expander getFramingExpander() {
+        return framingExpander;
+    }
+}
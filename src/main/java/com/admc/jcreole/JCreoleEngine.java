@@ -0,0 +1,159 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Thread-safe source of JCreole instances which reuse parsers and scanners.
+ * <p>
+ * Scanner buffers grow to fit the documents scanned, and parsers and scanners
+ * get faster as the JIT warms up their code paths, so a busy server should
+ * reuse them instead of instantiating new ones for every page.
+ * Each lease() returns a new JCreole (cheap), backed by an idle
+ * parser/scanner pair from this engine's pool if one is available.
+ * Lease with a JCreoleConfig to get sessions with settings shared by all
+ * threads, so that only page-specific values need to be set per lease.
+ * Like any JCreole, a leased one must be used by just one thread at a time.
+ * Pass it to release() when finished with it, after which it must not be
+ * used.
+ * </p> <p>
+ * The pool is bounded by maxIdle.
+ * Leasing never blocks: when no pair is idle, a new one is created, and
+ * pairs released when maxIdle pairs are already idle are discarded.
+ * </p>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class JCreoleEngine {
+    private static Log log = LogFactory.getLog(JCreoleEngine.class);
+
+    public static final int DEFAULT_MAX_IDLE = 8;
+
+    /**
+     * An idle parser with its scanners, which are created on demand.
+     */
+    private static class Pair {
+        CreoleParser parser;
+        CreoleScanner scanner;
+        UntrackedCreoleScanner untrackedScanner;
+
+        Pair(CreoleParser parser, CreoleScanner scanner,
+                UntrackedCreoleScanner untrackedScanner) {
+            this.parser = parser;
+            this.scanner = scanner;
+            this.untrackedScanner = untrackedScanner;
+        }
+    }
+
+    private final BlockingQueue<Pair> idlePairs;
+
+    public JCreoleEngine() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    public JCreoleEngine(int maxIdle) {
+        if (maxIdle < 1)
+            throw new IllegalArgumentException("maxIdle < 1: " + maxIdle);
+        idlePairs = new ArrayBlockingQueue<Pair>(maxIdle);
+    }
+
+    /**
+     * Equivalent to lease(null).
+     */
+    public JCreole lease() {
+        return lease(null);
+    }
+
+    /**
+     * Returns a JCreole instance with default settings, as if instantiated
+     * with new JCreole() or new JCreole(rawBoilerPlate).
+     *
+     * @param rawBoilerPlate  null for no boilerplate
+     * @see JCreole#JCreole(String)
+     */
+    public JCreole lease(String rawBoilerPlate) {
+        return lease(null, rawBoilerPlate);
+    }
+
+    /**
+     * Returns a JCreole session for the specified config, as if instantiated
+     * with new JCreole(config, rawBoilerPlate).
+     *
+     * @param config  null for default settings
+     * @param rawBoilerPlate  null for that of the config (if any)
+     * @see JCreole#JCreole(JCreoleConfig, String)
+     */
+    public JCreole lease(JCreoleConfig config, String rawBoilerPlate) {
+        return leaseForTemplate(config, (rawBoilerPlate == null) ? null
+                : new PageTemplate(JCreole.toBoilerPlate(rawBoilerPlate)));
+    }
+
+    /**
+     * Same as lease(JCreoleConfig, String), but with an already compiled
+     * boilerplate.
+     *
+     * @param pageTemplate  null for that of the config (if any)
+     */
+    JCreole leaseForTemplate(
+            JCreoleConfig config, PageTemplate pageTemplate) {
+        Pair pair = idlePairs.poll();
+        if (pair == null)
+            return new JCreole(
+                    config, pageTemplate, new CreoleParser(), null, null);
+        return new JCreole(config, pageTemplate,
+                pair.parser, pair.scanner, pair.untrackedScanner);
+    }
+
+    /**
+     * Takes back the parser and scanners of the specified JCreole, which
+     * must have been leased from this engine and must not be used after this.
+     * <p>
+     * Results of the last parse, such as the JCreole's getCssHrefs(), and
+     * hrefs added with addCssHrefs() are cleared, so obtain them before
+     * releasing.
+     * </p>
+     */
+    public void release(JCreole jCreole) {
+        CreoleParser parser = jCreole.parser;
+        if (parser == null)
+            throw new IllegalStateException("JCreole already released");
+        jCreole.parser = null;
+        // Drop the previous document and the previous lessee's settings now,
+        // so idle pairs don't retain any references to them.
+        parser.resetAll();
+        Pair pair = new Pair(parser, jCreole.scanner, jCreole.untrackedScanner);
+        jCreole.scanner = null;
+        jCreole.untrackedScanner = null;
+        jCreole.cssHrefs = null;
+        if (!idlePairs.offer(pair))
+            log.debug("Discarding parser/scanner pair since pool is full");
+    }
+
+    /**
+     * @return Number of idle parser/scanner pairs now pooled
+     */
+    public int getIdleCount() {
+        return idlePairs.size();
+    }
+}
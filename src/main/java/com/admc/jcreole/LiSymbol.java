@@ -29,7 +29,7 @@ import java.util.regex.Matcher;
  */
 class LiSymbol extends Token {
     private char type;
-    private String content;
+    private WashedSymbol content;
     private boolean headed;
     private char enumSymbol;
 
@@ -53,14 +53,18 @@ class LiSymbol extends Token {
                     "Illegal list level: " + getIntParam());
     }
 
-    public void setContent(final String content) {
-        Matcher matcher = EnumSymbolPattern.matcher(content);
-        if (matcher.matches()) {
-            enumSymbol = matcher.group(1).charAt(0);
-            this.content = matcher.group(2);
-        } else {
-            this.content = content;
+    /**
+     * The content is nested, not copied, so it must not be modified after
+     * this.
+     */
+    public void setContent(final WashedSymbol content) {
+        // Same test as EnumSymbolPattern, without flattening the content
+        if (content.length() > 1 && content.charAt(1) == '#'
+                && "1aAiI".indexOf(content.charAt(0)) > -1) {
+            enumSymbol = content.charAt(0);
+            content.deleteFirstChars(2);
         }
+        this.content = content;
         if (this.content.length() < 1)
             throw new IllegalArgumentException("Empty list items prohibited");
     }
@@ -77,8 +81,9 @@ class LiSymbol extends Token {
         return getIntParam();
     }
 
-    public String getContent() {
+    public WashedSymbol getContent() {
         if (!headed) return content;
+        String content = this.content.toString();
         // TODO:  Consider whether useful or counter-productive to make the
         // ih and id spans jcxSpan-addressable by writing markers here.
         int pipeOffset = content.indexOf('|');
@@ -94,7 +99,7 @@ class LiSymbol extends Token {
             sb.append("<span class=\"jcreole_ld\">")
                 .append(content.substring(pipeOffset + 1))
                 .append("</span>");
-        return sb.toString();
+        return new WashedSymbol(sb.toString());
     }
 
     public String toString() {
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.admc.jcreole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of rendered pages, bounded by the total number of characters of
+ * the cached pages, which evicts the least recently used pages first.
+ * <p>
+ * Each page is stored with the files it was rendered from, and their
+ * modification times when they were read.
+ * A page is only returned while none of those files has been modified,
+ * created or deleted since it was rendered.
+ * Files which were looked for but did not exist should be included, since
+ * creating one (like a boilerplate.html closer to the page) may change the
+ * page.
+ * </p> <p>
+ * Instances are thread-safe.
+ * File modification times are checked without holding the lock, so
+ * concurrent requests only contend for the brief map operations.
+ * </p>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class PageCache {
+    /**
+     * The files which a page is rendered from, with their modification
+     * times.
+     * <p>
+     * Add each file before reading it, or looking for it, so that a
+     * modification while the page is being rendered invalidates the page.
+     * A page which uses a value that is not derived from files, like the
+     * time of the request, should not be cached; mark its Inputs with
+     * setVolatile().
+     * </p>
+     */
+    public static class Inputs {
+        private Map<File, Long> modTimes = new LinkedHashMap<File, Long>();
+        private volatile boolean isVolatile;
+
+        /**
+         * Prevents the page from being cached.
+         */
+        public void setVolatile() {
+            isVolatile = true;
+        }
+
+        public boolean isVolatile() {
+            return isVolatile;
+        }
+
+        /**
+         * @return the modification time recorded for the file
+         */
+        public long add(File file) {
+            Long modTime = modTimes.get(file);
+            if (modTime == null) {
+                // N.b. lastModified() returns 0 for a file which does not exist
+                modTime = Long.valueOf(file.lastModified());
+                modTimes.put(file, modTime);
+            }
+            return modTime.longValue();
+        }
+    }
+
+    /**
+     * Writes a page through to another Writer, while keeping a copy of it
+     * for the cache as long as the page may still be cached.
+     * <p>
+     * The copy is dropped, and the page is then only written through, once
+     * it exceeds the size limit of the cache or its Inputs are marked
+     * volatile.
+     * So a page which can not be cached costs no more memory than when
+     * caching is disabled.
+     * </p>
+     *
+     * @see PageCache#newPageWriter(Writer, PageCache.Inputs)
+     */
+    public static class PageWriter extends Writer {
+        private Writer out;
+        private Inputs inputs;
+        private long maxChars;
+        private StringBuilder copy = new StringBuilder();
+
+        private PageWriter(Writer out, Inputs inputs, long maxChars) {
+            this.out = out;
+            this.inputs = inputs;
+            this.maxChars = maxChars;
+        }
+
+        /**
+         * @return false if the copy has been dropped
+         */
+        private boolean keep(int len) {
+            if (copy != null
+                    && (inputs.isVolatile() || copy.length() + len > maxChars))
+                copy = null;
+            return copy != null;
+        }
+
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            if (keep(len)) copy.append(cbuf, off, len);
+        }
+
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            if (keep(len)) copy.append(str, off, off + len);
+        }
+
+        public void write(int c) throws IOException {
+            out.write(c);
+            if (keep(1)) copy.append((char) c);
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        public void close() throws IOException {
+            out.close();
+        }
+
+        /**
+         * @return the page written, or null if it may not be cached
+         */
+        public String getPage() {
+            return keep(0) ? copy.toString() : null;
+        }
+    }
+
+    private static class Page {
+        private String content;
+        private File[] inputs;
+        private long[] modTimes;
+
+        private Page(String content, Inputs pageInputs) {
+            this.content = content;
+            inputs = new File[pageInputs.modTimes.size()];
+            modTimes = new long[inputs.length];
+            int i = 0;
+            for (Map.Entry<File, Long> entry : pageInputs.modTimes.entrySet()) {
+                inputs[i] = entry.getKey();
+                modTimes[i++] = entry.getValue();
+            }
+        }
+
+        /**
+         * @return true if no input has changed since the page was rendered
+         */
+        private boolean isCurrent() {
+            for (int i = 0; i < inputs.length; i++)
+                if (inputs[i].lastModified() != modTimes[i]) return false;
+            return true;
+        }
+    }
+
+    private long maxChars;
+    private long chars;
+    private Map<String, Page> pages =
+            new LinkedHashMap<String, Page>(16, .75f, true);
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+    private AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maxChars  Maximum total length of the cached pages.
+     *        0 to cache nothing.
+     */
+    public PageCache(long maxChars) {
+        if (maxChars < 0)
+            throw new IllegalArgumentException(
+                    "Negative maxChars: " + maxChars);
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * @return false if this cache caches nothing
+     */
+    public boolean isEnabled() {
+        return maxChars > 0;
+    }
+
+    /**
+     * @return a Writer which writes to the specified one, and keeps a copy
+     *         of the page for put() while it may be cached, or null if
+     *         this cache caches nothing
+     */
+    public PageWriter newPageWriter(Writer out, Inputs inputs) {
+        return isEnabled() ? new PageWriter(out, inputs, maxChars) : null;
+    }
+
+    /**
+     * @return the cached page for the specified key, or null if there is
+     *         none which is current
+     */
+    public String get(String key) {
+        Page page;
+        synchronized (pages) {
+            page = pages.get(key);
+        }
+        if (page == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (!page.isCurrent()) {
+            synchronized (pages) {
+                // Unless another thread has already replaced it
+                if (pages.get(key) == page) {
+                    pages.remove(key);
+                    chars -= page.content.length();
+                }
+            }
+            invalidations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return page.content;
+    }
+
+    /**
+     * Caches the specified page, evicting the least recently used pages as
+     * necessary to stay within the size limit.
+     * A page longer than the size limit, or whose inputs are volatile, is
+     * not cached.
+     *
+     * @param inputs  All files which were read, or looked for, to render
+     *        the page
+     */
+    public void put(String key, String content, Inputs inputs) {
+        if (content.length() > maxChars || inputs.isVolatile()) return;
+        Page page = new Page(content, inputs);
+        synchronized (pages) {
+            Page oldPage = pages.put(key, page);
+            if (oldPage != null) chars -= oldPage.content.length();
+            chars += content.length();
+            Iterator<Page> it = pages.values().iterator();
+            Page eldest;
+            while (chars > maxChars) {
+                eldest = it.next();
+                it.remove();
+                chars -= eldest.content.length();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached pages.
+     */
+    public void clear() {
+        synchronized (pages) {
+            pages.clear();
+            chars = 0;
+        }
+    }
+
+    /**
+     * @return Number of get() calls which returned a page
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of get() calls which returned null
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of pages removed to make room for others
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return Number of pages removed because an input had changed
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * @return Number of pages currently cached
+     */
+    public int size() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+    /**
+     * @return Total length of the pages currently cached
+     */
+    public long getChars() {
+        synchronized (pages) {
+            return chars;
+        }
+    }
+
+    public String toString() {
+        return String.format("%d pages, %d chars; %d hits, %d misses, "
+                + "%d evictions, %d invalidations", size(), getChars(),
+                getHits(), getMisses(), getEvictions(), getInvalidations());
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.HashSet;
+import com.admc.util.Expander;
+import com.admc.util.EolWriter;
+
+/**
+ * A boilerplate compiled once into literal text and slots, so that pages
+ * can be rendered by writing the parts in order.
+ * <p>
+ * Slots are the $(pageHeaders) and $(pageContent) insertion points, other
+ * $(framing) references, and ${html} references in the boilerplate text.
+ * Rendering gives the same output as expanding the boilerplate with the
+ * framing Expander, converting line delimiters, and then expanding the
+ * whole page with the HTML Expander, except that an HTML reference can not
+ * span a slot boundary.
+ * </p>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class PageTemplate {
+    private static final String PAGE_HEADERS = "pageHeaders";
+    private static final String PAGE_CONTENT = "pageContent";
+
+    /**
+     * A reference in the boilerplate
+     */
+    private static class Slot {
+        private boolean framing;
+        private String name;  // Null if no mapping can satisfy it
+        private char flag;
+        private String source;  // To write if unsatisfied, with no flag
+
+        private Slot(boolean framing, String name, char flag, String source) {
+            this.framing = framing;
+            this.name = name;
+            this.flag = flag;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Literal Strings and Slots, in order
+     */
+    private List<Object> parts = new ArrayList<Object>();
+    private boolean hasPageHeaders;
+
+    /**
+     * @param boilerPlate  boilerplate already cleaned with
+     *        JCreole.toBoilerPlate()
+     */
+    PageTemplate(String boilerPlate) {
+        final StringBuilder literal = new StringBuilder();
+        try {
+            Expander.scan(Expander.PairedDelims.ROUNDED, boilerPlate,
+                    new Expander.PartHandler() {
+                public void text(CharSequence cs, int start, int end) {
+                    literal.append(cs, start, end);
+                }
+                public void reference(String name, char flag,
+                        CharSequence cs, int start, int end)
+                        throws IOException {
+                    addLiteral(literal);
+                    literal.setLength(0);
+                    StringBuilder source = new StringBuilder();
+                    Expander.appendUnescaped(source, cs, start, end,
+                            Expander.PairedDelims.ROUNDED.lChar);
+                    parts.add(new Slot(
+                            true, name, flag, source.toString()));
+                    if (PAGE_HEADERS.equals(name) && flag != '-')
+                        hasPageHeaders = true;
+                }
+            });
+            addLiteral(literal);
+        } catch (IOException ioe) {
+            throw new RuntimeException(
+                    "StringBuilder append threw: " + ioe, ioe);
+        }
+    }
+
+    /**
+     * Adds the parts for text which has already been framing-unescaped.
+     */
+    private void addLiteral(CharSequence text) throws IOException {
+        final StringBuilder literal = new StringBuilder();
+        Expander.scan(Expander.PairedDelims.CURLY, text,
+                new Expander.PartHandler() {
+            public void text(CharSequence cs, int start, int end) {
+                literal.append(cs, start, end);
+            }
+            public void reference(String name, char flag,
+                    CharSequence cs, int start, int end) throws IOException {
+                if (literal.length() > 0) parts.add(literal.toString());
+                literal.setLength(0);
+                StringBuilder source = new StringBuilder();
+                Expander.appendUnescaped(source, cs, start, end,
+                        Expander.PairedDelims.CURLY.lChar);
+                parts.add(new Slot(false, name, flag, source.toString()));
+            }
+        });
+        if (literal.length() > 0) parts.add(literal.toString());
+    }
+
+    /**
+     * @return whether the boilerplate has a pageHeaders insertion point
+     */
+    public boolean hasPageHeaders() {
+        return hasPageHeaders;
+    }
+
+    /**
+     * Writes the page.
+     * <p>
+     * Unsatisfied ! references in the boilerplate are detected before
+     * anything is written.
+     * If the page headers or content contain an unsatisfied ! reference,
+     * then the output written before the exception is incomplete.
+     * </p>
+     *
+     * @param outputEol  Line delimiters for output.  Null to leave as \n's.
+     *        Values of the HTML Expander are written without conversion.
+     * @param pageHeaders  Null if hasPageHeaders() is false
+     * @throws IllegalArgumentException for an unsatisfied ! reference
+     */
+    public void render(Writer out, String outputEol, CharSequence pageHeaders,
+            CharSequence pageContent, Expander framingExpander,
+            Expander htmlExpander) throws IOException {
+        render(out, outputEol, pageHeaders,
+                Collections.singletonList(pageContent),
+                framingExpander, htmlExpander);
+    }
+
+    /**
+     * Same as render(Writer, String, CharSequence, CharSequence, Expander,
+     * Expander), but with the page content supplied in parts, which are
+     * written in order.
+     * An HTML reference can not span parts.
+     *
+     * @since 1.4.0
+     */
+    public void render(Writer out, String outputEol, CharSequence pageHeaders,
+            List<? extends CharSequence> pageContentParts,
+            Expander framingExpander, Expander htmlExpander)
+            throws IOException {
+        // Suppliers are called at most once per rendering
+        Expander.Memos framingMemos = new Expander.Memos();
+        Expander.Memos htmlMemos = new Expander.Memos();
+        Set<String> throwRefs = null;
+        Slot slot;
+        for (Object part : parts) {
+            if (!(part instanceof Slot)) continue;
+            slot = (Slot) part;
+            if (slot.flag != '!' || isContent(slot) || valueOf(slot,
+                    pageHeaders, framingExpander, htmlExpander,
+                    framingMemos, htmlMemos) != null)
+                continue;
+            if (throwRefs == null) throwRefs = new HashSet<String>();
+            throwRefs.add((slot.name == null) ? slot.source : slot.name);
+        }
+        if (throwRefs != null)
+            throw new IllegalArgumentException(
+                    "Unsatisfied ! reference(s): " + throwRefs);
+        Writer textOut = new EolWriter(out, outputEol);
+        CharSequence value;
+        for (Object part : parts) {
+            if (!(part instanceof Slot)) {
+                textOut.write((String) part);
+                continue;
+            }
+            slot = (Slot) part;
+            if (isContent(slot)) {
+                for (CharSequence contentPart : pageContentParts)
+                    htmlExpander.expand(contentPart, textOut, out, htmlMemos);
+                continue;
+            }
+            value = valueOf(slot, pageHeaders, framingExpander, htmlExpander,
+                    framingMemos, htmlMemos);
+            if (value == null) {
+                if (slot.flag != 0) continue;
+                value = slot.source;
+            } else if (!slot.framing) {
+                out.write(value.toString());
+                continue;
+            }
+            if (slot.framing) {
+                htmlExpander.expand(value, textOut, out, htmlMemos);
+            } else {
+                textOut.write(value.toString());
+            }
+        }
+    }
+
+    /**
+     * @return whether the slot is the pageContent insertion point
+     */
+    private static boolean isContent(Slot slot) {
+        return slot.framing && PAGE_CONTENT.equals(slot.name);
+    }
+
+    /**
+     * @return the value for a slot other than the pageContent insertion
+     *         point, or null if it is unsatisfied
+     */
+    private static CharSequence valueOf(Slot slot, CharSequence pageHeaders,
+            Expander framingExpander, Expander htmlExpander,
+            Expander.Memos framingMemos, Expander.Memos htmlMemos) {
+        if (slot.name == null) return null;
+        if (!slot.framing) return htmlExpander.get(slot.name, htmlMemos);
+        if (slot.name.equals(PAGE_HEADERS) && pageHeaders != null)
+            return pageHeaders;
+        return framingExpander.get(slot.name, framingMemos);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.admc.jcreole;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PageTemplates compiled from boilerplate files, each of which is used only
+ * while its file has the modification time which it was compiled at.
+ * <p>
+ * Bounded by a number of templates, evicting the least recently used
+ * first, since a site may have a boilerplate in any number of directories.
+ * Instances are thread-safe.
+ * Two threads may compile the same boilerplate at once, in which case
+ * either template may be kept.
+ * </p>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+class TemplateCache {
+    private static class Entry {
+        private PageTemplate pageTemplate;
+        private long modTime;
+
+        private Entry(PageTemplate pageTemplate, long modTime) {
+            this.pageTemplate = pageTemplate;
+            this.modTime = modTime;
+        }
+    }
+
+    static final int DEFAULT_MAX_TEMPLATES = 64;
+
+    private Map<File, Entry> entries;
+
+    TemplateCache() {
+        this(DEFAULT_MAX_TEMPLATES);
+    }
+
+    /**
+     * @param maxTemplates  Maximum number of templates to keep
+     */
+    TemplateCache(final int maxTemplates) {
+        if (maxTemplates < 1)
+            throw new IllegalArgumentException(
+                    "maxTemplates < 1: " + maxTemplates);
+        entries = new LinkedHashMap<File, Entry>(16, .75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<File, Entry> e) {
+                return size() > maxTemplates;
+            }
+        };
+    }
+
+    /**
+     * @param modTime  Current modification time of the boilerplate file
+     * @return the template compiled from the specified boilerplate file at
+     *         the specified modification time, or null
+     */
+    PageTemplate get(File bpFile, long modTime) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(bpFile);
+        }
+        return (entry == null || entry.modTime != modTime)
+                ? null : entry.pageTemplate;
+    }
+
+    /**
+     * Compiles and caches a template.
+     *
+     * @param modTime  Modification time of the boilerplate file, obtained
+     *        before reading it
+     * @return the new template
+     */
+    PageTemplate put(File bpFile, long modTime, String rawBoilerPlate) {
+        PageTemplate pageTemplate =
+                new PageTemplate(JCreole.toBoilerPlate(rawBoilerPlate));
+        synchronized (entries) {
+            entries.put(bpFile, new Entry(pageTemplate, modTime));
+        }
+        return pageTemplate;
+    }
+
+    /**
+     * @return Number of templates currently cached
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
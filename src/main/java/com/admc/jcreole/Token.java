@@ -62,13 +62,25 @@ class Token extends Symbol {
         this(i, null, offset, line, column, UNSET);
     }
 
+    /**
+     * Token whose value is a range of the scanner input.
+     * No String is created for the value unless getStringVal() is called.
+     */
+    public Token(short i, BufferSlice slice, int line, int column) {
+        super(i, slice);
+        this.offset = slice.getStart();
+        this.line = line;
+        this.column = column;
+    }
+
     public String toString() {
         return "#" + getId() + "/(" + value + ')';
     }
 
-    @SuppressWarnings("@unchecked")
     public String getStringVal() {
-        return (String) value;
+        // A BufferSlice value caches its own String
+        return (value instanceof BufferSlice)
+                ? value.toString() : (String) value;
     }
 
     /**
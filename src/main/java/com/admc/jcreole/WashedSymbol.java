@@ -17,19 +17,33 @@
 
 package com.admc.jcreole;
 
-import beaver.Symbol;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A Parser token specifically marked as being HTML-safe.
+ * <p>
+ * Content is held as a list of segments, each of which is either an
+ * immutable CharSequence (usually a String) or a nested WashedSymbol, so
+ * that enclosing elements may be built up without copying the content of
+ * the elements nested inside of them.
+ * Short appended Strings are coalesced into a single segment.
+ * The content is copied only when the symbol is flattened with toString()
+ * or appendTo().
+ * </p>
  *
  * @author Blaine Simpson (blaine dot simpson at admc dot com)
  * @since 1.0
  */
 class WashedSymbol extends Token {
-    private String cleanString;
+    private static final int MIN_SEGMENT_LENGTH = 64;
+
+    private List<Object> segments;
+    private StringBuilder tail;
+    private int length;
 
     public WashedSymbol(String s) {
-        cleanString = s;
+        if (s != null) append(s);
     }
 
     protected WashedSymbol() {
@@ -37,17 +51,207 @@ class WashedSymbol extends Token {
     }
 
     /**
-     * @throws if the symbol already has a cleanString.
+     * @throws if the symbol already has content.
      */
-    public void setCleanString(String s) {
-        if (cleanString != null)
+    public void setCleanString(CharSequence s) {
+        if (segments != null || tail != null)
             throw new IllegalStateException(
-                    "WashedSymbol already has content '" + cleanString
+                    "WashedSymbol already has content '"
+                    + appendContentTo(new StringBuilder())
                     + "', but there was an attempt to change it to: " + s);
-        cleanString = s;
+        append(s);
+    }
+
+    public WashedSymbol append(CharSequence s) {
+        int len = s.length();
+        if (len < 1) return this;
+        if (len < MIN_SEGMENT_LENGTH) {
+            if (tail == null) tail = new StringBuilder();
+            tail.append(s);
+        } else {
+            addSegment(s.toString());
+        }
+        length += len;
+        return this;
+    }
+
+    public WashedSymbol append(char c) {
+        if (tail == null) tail = new StringBuilder();
+        tail.append(c);
+        length++;
+        return this;
+    }
+
+    /**
+     * Nests the specified symbol without copying its content.
+     * The specified symbol must not be modified after this.
+     */
+    public WashedSymbol append(WashedSymbol ws) {
+        int len = ws.length();
+        if (len < 1) return this;
+        addSegment(ws);
+        length += len;
+        return this;
+    }
+
+    /**
+     * Adds the specified CharSequence as a segment without copying it.
+     * The specified CharSequence must not be modified after this.
+     *
+     * @since 1.4.0
+     */
+    public WashedSymbol appendUncopied(CharSequence cs) {
+        int len = cs.length();
+        if (len < 1) return this;
+        addSegment(cs);
+        length += len;
+        return this;
+    }
+
+    private void addSegment(Object segment) {
+        if (segments == null) segments = new ArrayList<Object>();
+        if (tail != null) {
+            segments.add(tail.toString());
+            tail = null;
+        }
+        segments.add(segment);
+    }
+
+    /**
+     * @return Length of the flattened content
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the char at the specified index of the flattened content.
+     * Only intended for indexes near the start, since segments are walked.
+     */
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        int len;
+        if (segments != null) for (Object segment : segments) {
+            len = segmentLength(segment);
+            if (index < len) return (segment instanceof WashedSymbol)
+                    ? ((WashedSymbol) segment).charAt(index)
+                    : ((CharSequence) segment).charAt(index);
+            index -= len;
+        }
+        return tail.charAt(index);
+    }
+
+    /**
+     * @return Last char of the flattened content, or -1 if there is none
+     */
+    public int lastChar() {
+        if (length < 1) return -1;
+        if (tail != null) return tail.charAt(tail.length() - 1);
+        Object segment = segments.get(segments.size() - 1);
+        return (segment instanceof WashedSymbol)
+                ? ((WashedSymbol) segment).lastChar()
+                : ((CharSequence) segment).charAt(
+                        ((CharSequence) segment).length() - 1);
+    }
+
+    public void deleteLastChar() {
+        if (length < 1) throw new IndexOutOfBoundsException("Empty");
+        length--;
+        if (tail != null) {
+            tail.setLength(tail.length() - 1);
+            if (tail.length() == 0) tail = null;
+            return;
+        }
+        int i = segments.size() - 1;
+        Object segment = segments.get(i);
+        if (segment instanceof WashedSymbol) {
+            ((WashedSymbol) segment).deleteLastChar();
+            if (((WashedSymbol) segment).length() > 0) return;
+        } else if (((CharSequence) segment).length() > 1) {
+            segments.set(i, ((CharSequence) segment).subSequence(
+                    0, ((CharSequence) segment).length() - 1));
+            return;
+        }
+        segments.remove(i);
+    }
+
+    public void deleteFirstChars(int count) {
+        if (count > length)
+            throw new IndexOutOfBoundsException(Integer.toString(count));
+        length -= count;
+        int len;
+        while (count > 0 && segments != null && segments.size() > 0) {
+            Object segment = segments.get(0);
+            len = segmentLength(segment);
+            if (count < len) {
+                if (segment instanceof WashedSymbol)
+                    ((WashedSymbol) segment).deleteFirstChars(count);
+                else
+                    segments.set(0, ((CharSequence) segment).subSequence(
+                            count, len));
+                return;
+            }
+            segments.remove(0);
+            count -= len;
+        }
+        if (count > 0) {
+            tail.delete(0, count);
+            if (tail.length() == 0) tail = null;
+        }
+    }
+
+    private static int segmentLength(Object segment) {
+        return (segment instanceof WashedSymbol)
+                ? ((WashedSymbol) segment).length()
+                : ((CharSequence) segment).length();
+    }
+
+    /**
+     * Copies the flattened content to the specified StringBuilder.
+     *
+     * @return the specified StringBuilder
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        return appendContentTo(sb);
+    }
+
+    /**
+     * Like appendTo(), but without any decoration which a subclass may add.
+     */
+    protected final StringBuilder appendContentTo(StringBuilder sb) {
+        if (segments != null) for (Object segment : segments)
+            if (segment instanceof WashedSymbol)
+                ((WashedSymbol) segment).appendTo(sb);
+            else
+                sb.append((CharSequence) segment);
+        if (tail != null) sb.append(tail);
+        return sb;
+    }
+
+    /**
+     * Adds the segments of the flattened content to the specified List, in
+     * order, without copying them.
+     * <p>
+     * Unlike appendTo(), this includes no decoration which a subclass may
+     * add, so it is only for symbols built without subclasses, like the
+     * output of the parser.
+     * </p>
+     *
+     * @return the specified List
+     * @since 1.4.0
+     */
+    List<CharSequence> addPartsTo(List<CharSequence> parts) {
+        if (segments != null) for (Object segment : segments)
+            if (segment instanceof WashedSymbol)
+                ((WashedSymbol) segment).addPartsTo(parts);
+            else
+                parts.add((CharSequence) segment);
+        if (tail != null) parts.add(tail.toString());
+        return parts;
     }
 
     public String toString() {
-        return (cleanString == null) ? "" : cleanString;
+        return appendTo(new StringBuilder(length())).toString();
     }
 }
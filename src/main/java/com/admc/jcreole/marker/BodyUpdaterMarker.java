@@ -30,7 +30,6 @@ import com.admc.jcreole.EntryOrdering;
 abstract public class BodyUpdaterMarker extends BufferMarker {
     protected Map<String, Entry> origKeyToEntry = new HashMap<String, Entry>();
     protected List<Entry> entries = new ArrayList<Entry>();
-    protected StringBuilder outBuffer = new StringBuilder();
     protected EntryOrdering ordering;
 
     public BodyUpdaterMarker(int id, EntryOrdering ordering) {
@@ -38,10 +37,5 @@ abstract public class BodyUpdaterMarker extends BufferMarker {
         this.ordering = ordering;
     }
 
-    public void updateBuffer() {
-        super.updateBuffer();
-        targetSb.insert(offset, outBuffer.toString());
-    }
-
     abstract public void sort();
 }
@@ -17,6 +17,7 @@
 
 package com.admc.jcreole.marker;
 
+import java.util.Arrays;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -33,6 +34,24 @@ abstract public class BufferMarker implements Comparable<BufferMarker> {
     protected int id = -1;
     protected StringBuilder targetSb;
     public static final char markerChar = '\u001a';
+    /**
+     * Marker IDs are written as this many base-64 digits, which is enough
+     * for over a billion markers per document, while keeping every marker
+     * the same length.
+     */
+    public static final int ID_DIGITS = 5;
+    /** Length of every marker in the buffer:  markerChar + ID digits */
+    public static final int MARKER_LENGTH = 1 + ID_DIGITS;
+    public static final int MAX_ID = (1 << (6 * ID_DIGITS)) - 1;
+    private static final char[] ID_DIGIT_CHARS =
+            ("0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+            + "abcdefghijklmnopqrstuvwxyz-_").toCharArray();
+    private static final int[] ID_DIGIT_VALUES = new int[128];
+    static {
+        Arrays.fill(ID_DIGIT_VALUES, -1);
+        for (int i = 0; i < ID_DIGIT_CHARS.length; i++)
+            ID_DIGIT_VALUES[ID_DIGIT_CHARS[i]] = i;
+    }
     protected boolean applied;
 
     public String toString() { return getIdString() + '@' + offset; }
@@ -46,23 +65,52 @@ abstract public class BufferMarker implements Comparable<BufferMarker> {
     public int compareTo(BufferMarker other) {
         if (this == other) return 0;
         if (offset < 0 && other.offset < 0)
-            return Integer.valueOf(id).compareTo(Integer.valueOf(other.id));
-        return Integer.valueOf(offset).compareTo(Integer.valueOf(other.offset));
+            return (id < other.id) ? -1 : ((id == other.id) ? 0 : 1);
+        return (offset < other.offset)
+                ? -1 : ((offset == other.offset) ? 0 : 1);
     }
 
     protected BufferMarker(int id) {
         this.id = id;
-        if (id < 0 || id > 0xFFFF)
+        if (id < 0 || id > MAX_ID)
             throw new IllegalArgumentException(
-                    "Id is not between 0 and 0xFFFF inclusive: " + id);
+                    "Id is not between 0 and " + MAX_ID + " inclusive: " + id);
     }
 
     public String getIdString() {
-        return String.format("%04X", id);
+        return appendIdString(new StringBuilder(ID_DIGITS), id).toString();
     }
 
     public String getMarkerString() {
-        return Character.toString(markerChar) + getIdString();
+        return appendIdString(new StringBuilder(MARKER_LENGTH)
+                .append(markerChar), id).toString();
+    }
+
+    private static StringBuilder appendIdString(StringBuilder sb, int id) {
+        for (int shift = 6 * (ID_DIGITS - 1); shift >= 0; shift -= 6)
+            sb.append(ID_DIGIT_CHARS[(id >>> shift) & 0x3F]);
+        return sb;
+    }
+
+    /**
+     * Decodes the ID of a marker.
+     *
+     * @param offset  Offset of the markerChar of a marker in cs
+     * @return the ID, or -1 if cs does not hold a complete marker there
+     */
+    public static int parseId(CharSequence cs, int offset) {
+        if (offset < 0 || offset + MARKER_LENGTH > cs.length()
+                || cs.charAt(offset) != markerChar) return -1;
+        int id = 0;
+        int digit;
+        char c;
+        for (int i = offset + 1; i < offset + MARKER_LENGTH; i++) {
+            c = cs.charAt(i);
+            digit = (c < 128) ? ID_DIGIT_VALUES[c] : -1;
+            if (digit < 0) return -1;
+            id = (id << 6) | digit;
+        }
+        return id;
     }
 
     public int getOffset() {
@@ -80,19 +128,18 @@ abstract public class BufferMarker implements Comparable<BufferMarker> {
         if (targetSb == null || offset < 1)
             throw new IllegalStateException(
                     "targetSb or offset not initialized");
-        if (targetSb.length() < offset + 4)
+        if (targetSb.length() < offset + MARKER_LENGTH)
             throw new IllegalStateException(
                     "StringBuilder not long enough to contain marker at "
                     + offset);
-        if (targetSb.charAt(offset) != '\u001a')
+        if (targetSb.charAt(offset) != markerChar)
             throw new IllegalStateException(
                     "Missing binary SUB char at offset " + offset);
-        if (!targetSb.substring(offset + 1, offset + 5)
-                .equals(getIdString()))
+        if (parseId(targetSb, offset) != id)
             throw new IllegalStateException(
                     "Marker ID mismatch.  Expected " + getIdString()
                     + " but is '" + targetSb.substring(
-                    offset + 1, offset + 5) + "'");
+                    offset + 1, offset + MARKER_LENGTH) + "'");
     }
 
     public void setContext(StringBuilder targetSb, int offset) {
@@ -102,8 +149,13 @@ abstract public class BufferMarker implements Comparable<BufferMarker> {
     }
 
     /**
-     * Removes the single character at the indicated point.
-     * Some subclasses will need to do more than this to update the buffer.
+     * Replaces the marker at the indicated point with the replacement text
+     * from appendReplacement(StringBuilder).
+     * <p>
+     * This shifts the remainder of the buffer, so when applying many
+     * markers, MarkerMap instead writes a new buffer in one pass with
+     * appendReplacement(StringBuilder).
+     * </p>
      */
     public void updateBuffer() {
         if (applied)
@@ -111,6 +163,18 @@ abstract public class BufferMarker implements Comparable<BufferMarker> {
                     "This marker already applied: " + this);
         validate();  // Rechecking since contents of the targetSb could easily
                      // have been shifted since setContext was called.
-        targetSb.delete(offset, offset + 5);
+        StringBuilder replacement = new StringBuilder();
+        appendReplacement(replacement);
+        targetSb.replace(
+                offset, offset + MARKER_LENGTH, replacement.toString());
+    }
+
+    /**
+     * Appends the text which replaces this marker in the output.
+     * By default nothing, i.e. the marker is just removed.
+     * Subclasses append whatever they need to write in place of the marker.
+     */
+    public void appendReplacement(StringBuilder out) {
+        // Intentionally empty
     }
 }
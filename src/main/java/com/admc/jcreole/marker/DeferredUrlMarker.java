@@ -44,10 +44,11 @@ public class DeferredUrlMarker extends BufferMarker {
         this.targetId = targetId;
     }
 
-    public void updateBuffer() {
-        super.updateBuffer();
-        targetSb.insert(offset, (targetId < 0)
-                ? inUrl : ("#jcmdef" + targetId + "\" title=\"" + inUrl
-                          + "\" class=\"jcreole_mdef"));
+    public void appendReplacement(StringBuilder out) {
+        if (targetId < 0)
+            out.append(inUrl);
+        else
+            out.append("#jcmdef").append(targetId).append("\" title=\"")
+                    .append(inUrl).append("\" class=\"jcreole_mdef");
     }
 }
@@ -50,10 +50,10 @@ public class FootNoteRefMarker extends BufferMarker {
         this.targNum = targNum;
     }
 
-    public void updateBuffer() {
-        super.updateBuffer();
-        targetSb.insert(offset, (targNum < 0 || entryLabel == null) 
-                ? (0 + "\"><sup class=\"jcreole_orphanLink\">orphaned")
-                : (targNum + "\"><sup>" + entryLabel));
+    public void appendReplacement(StringBuilder out) {
+        if (targNum < 0 || entryLabel == null)
+            out.append("0\"><sup class=\"jcreole_orphanLink\">orphaned");
+        else
+            out.append(targNum).append("\"><sup>").append(entryLabel);
     }
 }
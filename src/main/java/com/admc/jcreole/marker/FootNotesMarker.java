@@ -19,8 +19,6 @@ package com.admc.jcreole.marker;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.HashSet;
 import com.admc.jcreole.EntryOrdering;
 import com.admc.jcreole.CreoleParseException;
 
@@ -84,9 +82,8 @@ public class FootNotesMarker extends BodyUpdaterMarker {
         origKeyToEntry.get(name).setHtml(entryHtml);
     }
 
-    public void updateBuffer() {
-        for (Entry entry : entries) outBuffer.append(entry.toHtml("jcfn"));
-        super.updateBuffer();
+    public void appendReplacement(StringBuilder out) {
+        for (Entry entry : entries) out.append(entry.toHtml("jcfn"));
     }
 
     /**
@@ -100,8 +97,9 @@ public class FootNotesMarker extends BodyUpdaterMarker {
                 entry.setLabel(Integer.toString(entry.getEntryId()));
             break;
           case REF_ORDER:
-            Set<String> loadedNames = new HashSet<String>();
+            // Entry IDs are 1-based positions in definition order
             List<Entry> origEntries = new ArrayList<Entry>(entries);
+            boolean[] placed = new boolean[origEntries.size()];
             entries.clear();
             Entry targetEntry;
             for (FootNoteRefMarker refMarker : refMarkers) {
@@ -111,16 +109,18 @@ public class FootNotesMarker extends BodyUpdaterMarker {
                     throw new CreoleParseException(
                             "No entry defined for referenced name: "
                             + refMarker.getName());
-                if (loadedNames.contains(refMarker.getName())) continue;
-                loadedNames.add(refMarker.getName());
+                if (placed[targetEntry.getEntryId() - 1]) continue;
+                placed[targetEntry.getEntryId() - 1] = true;
                 entries.add(targetEntry);
-                origEntries.remove(targetEntry);
                 targetEntry.setLabel(Integer.toString(entries.size()));
             }
             // Remainder of this case adds non-referenced entries in original
             // definition order
-            for (Entry entry : origEntries) entry.setLabel("unreferenced");
-            entries.addAll(origEntries);
+            for (Entry entry : origEntries) {
+                if (placed[entry.getEntryId() - 1]) continue;
+                entry.setLabel("unreferenced");
+                entries.add(entry);
+            }
             break;
         }
     }
@@ -58,12 +58,12 @@ public class HeadingMarker extends BlockMarker {
         return sectionHeading;
     }
 
-    public void updateBuffer() {
+    public void appendReplacement(StringBuilder out) {
+        super.appendReplacement(out);
         String sequenceLabel = sectionHeading.getDottedSequenceLabel();
-        targetSb.insert(offset + 5, (sequenceLabel == null)
-                ? "><span class=\"jcreole_hbody\">"
-          : ("><span class=\"jcreole_hbody\"><span class=\"jcsec_enum\">&sect;"
-                  + sequenceLabel + "<span> "));
-        super.updateBuffer();
+        out.append("><span class=\"jcreole_hbody\">");
+        if (sequenceLabel != null)
+            out.append("<span class=\"jcsec_enum\">&sect;")
+                    .append(sequenceLabel).append("<span> ");
     }
 }
@@ -17,8 +17,6 @@
 
 package com.admc.jcreole.marker;
 
-import java.util.Map;
-import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -42,8 +40,12 @@ import com.admc.jcreole.DictionaryComparator;
 public class IndexMarker extends BodyUpdaterMarker {
     public List<IndexedMarker> refMarkers =
             new ArrayList<IndexedMarker>();
-    public Map<Entry, List<IndexedMarker>> entryLinks =
-            new HashMap<Entry, List<IndexedMarker>>();
+    /**
+     * Indexed by entry ID - 1.
+     * Entries are not used as keys because their labels are mutable.
+     */
+    public List<List<IndexedMarker>> entryLinks =
+            new ArrayList<List<IndexedMarker>>();
 
     public void add(IndexedMarker refMarker) {
         refMarkers.add(refMarker);
@@ -61,36 +63,34 @@ public class IndexMarker extends BodyUpdaterMarker {
         Entry entry;
         int counter = 0;
         for (IndexedMarker refMarker : refMarkers) {
-            if (origKeyToEntry.containsKey(refMarker.getName())) {
-                entry = origKeyToEntry.get(refMarker.getName());
-            } else {
+            entry = origKeyToEntry.get(refMarker.getName());
+            if (entry == null) {
                 entry = new Entry(1 + entries.size());
                 entry.setLabel(refMarker.getName());
-                entryLinks.put(entry, new ArrayList<IndexedMarker>());
+                entryLinks.add(new ArrayList<IndexedMarker>());
                 entries.add(entry);
                 origKeyToEntry.put(refMarker.getName(), entry);
             }
-            entryLinks.get(entry).add(refMarker);
+            entryLinks.get(entry.getEntryId() - 1).add(refMarker);
             refMarker.setTargNum(++counter);
         }
         StringBuilder sb = new StringBuilder();
         int refCount;
-        for (Map.Entry<Entry, List<IndexedMarker>> e :
-                entryLinks.entrySet()) {
+        for (Entry e : entries) {
             sb.setLength(0);
             refCount = 0;
-            for (IndexedMarker refMarker : e.getValue()) {
+            for (IndexedMarker refMarker :
+                    entryLinks.get(e.getEntryId() - 1)) {
                 if (sb.length() > 0) sb.append(' ');
                 sb.append("<a href=\"#jcindexed").append(refMarker.getTargNum())
                         .append("\">").append(++refCount).append("</a>");
             }
-            e.getKey().setHtml(sb.toString());
+            e.setHtml(sb.toString());
         }
     }
 
-    public void updateBuffer() {
-        for (Entry entry : entries) outBuffer.append(entry.toHtml(null));
-        super.updateBuffer();
+    public void appendReplacement(StringBuilder out) {
+        for (Entry entry : entries) out.append(entry.toHtml(null));
     }
 
     /**
@@ -101,7 +101,7 @@ public class IndexMarker extends BodyUpdaterMarker {
           case REF_ORDER:
             break;
           case NAME_BY_DICTIONARY:
-            Collections.sort(entries, DictionaryComparator.singleton);
+            DictionaryComparator.singleton.sort(entries);
             break;
           case NAME_BY_JAVA:
             Collections.sort(entries);
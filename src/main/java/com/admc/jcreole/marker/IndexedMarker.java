@@ -45,8 +45,7 @@ public class IndexedMarker extends BufferMarker {
         this.targNum = targNum;
     }
 
-    public void updateBuffer() {
-        super.updateBuffer();
-        targetSb.insert(offset, (targNum < 0) ? id : targNum);
+    public void appendReplacement(StringBuilder out) {
+        out.append((targNum < 0) ? id : targNum);
     }
 }
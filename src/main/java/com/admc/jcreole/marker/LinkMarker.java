@@ -48,8 +48,7 @@ public class LinkMarker extends BufferMarker {
         label = prefix + label + suffix;
     }
 
-    public void updateBuffer() {
-        super.updateBuffer();
-        if (label != null) targetSb.insert(offset, label);
+    public void appendReplacement(StringBuilder out) {
+        if (label != null) out.append(label);
     }
 }
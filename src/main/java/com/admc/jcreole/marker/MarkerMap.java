@@ -17,15 +17,12 @@
 
 package com.admc.jcreole.marker;
 
-import java.util.Set;
-import java.util.HashSet;
 import java.util.Arrays;
+import java.nio.CharBuffer;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Collections;
-import java.util.TreeMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import com.admc.jcreole.CreoleParseException;
@@ -35,11 +32,21 @@ import com.admc.jcreole.Sections;
 import com.admc.jcreole.EntryType;
 
 /**
+ * Table of the markers of one document, indexed by marker ID.
+ * <p>
+ * Marker IDs are assigned sequentially by the parser, so the table is just
+ * arrays indexed by ID, holding the markers, their kinds, and their offsets
+ * in the buffer.
+ * </p>
+ *
  * @author Blaine Simpson (blaine dot simpson at admc dot com)
  * @since 1.1.1
  */
-public class MarkerMap extends HashMap<Integer, BufferMarker> {
+public class MarkerMap {
     private static Log log = LogFactory.getLog(MarkerMap.class);
+    private static final byte OTHER = 0;
+    private static final byte BODY_UPDATER = 1;
+
     private Sections sections;
     private Map<String, String> idToTextHMap = new HashMap<String, String>();
     private String enumerationFormats;
@@ -47,6 +54,53 @@ public class MarkerMap extends HashMap<Integer, BufferMarker> {
     private MasterDefListMarker masterDefListMarker;
     private FootNotesMarker footNotesMarker;
     private IndexMarker indexMarker;
+    // The following are indexed by marker ID
+    private BufferMarker[] markers = new BufferMarker[64];
+    private byte[] kinds = new byte[64];
+    private int[] offsets = new int[64];
+    private int maxId;
+    private int count;
+
+    /**
+     * Adds a marker which has an ID not yet used in this map.
+     */
+    public void add(BufferMarker marker) {
+        int id = marker.id;
+        if (id >= markers.length) {
+            int newLength = Math.max(id + 1, markers.length * 2);
+            markers = Arrays.copyOf(markers, newLength);
+            kinds = Arrays.copyOf(kinds, newLength);
+            offsets = Arrays.copyOf(offsets, newLength);
+        }
+        if (markers[id] != null)
+            throw new IllegalArgumentException("Duplicate marker ID " + id);
+        markers[id] = marker;
+        kinds[id] =
+                (marker instanceof BodyUpdaterMarker) ? BODY_UPDATER : OTHER;
+        if (marker instanceof MasterDefListMarker) {
+            masterDefListMarker = (MasterDefListMarker) marker;
+        } else if (marker instanceof FootNotesMarker) {
+            footNotesMarker = (FootNotesMarker) marker;
+        } else if (marker instanceof IndexMarker) {
+            indexMarker = (IndexMarker) marker;
+        }
+        if (id > maxId) maxId = id;
+        count++;
+    }
+
+    /**
+     * @return the marker with the specified ID, or null if none
+     */
+    public BufferMarker get(int id) {
+        return (id < 0 || id > maxId) ? null : markers[id];
+    }
+
+    /**
+     * @return Number of markers in this map
+     */
+    public int size() {
+        return count;
+    }
 
     /**
      * @param enumerationFormats is the starting numerationFormats used for
@@ -57,27 +111,70 @@ public class MarkerMap extends HashMap<Integer, BufferMarker> {
      *        (or elsewhere).
      */
     public StringBuilder apply(StringBuilder sb, String enumerationFormats) {
+        int[] bodyUpdaterIds = applyOthers(sb, enumerationFormats);
+        if (bodyUpdaterIds != null) splice(bodyUpdaterIds, BODY_UPDATER);
+        return buffer;
+    }
+
+    /**
+     * Same as apply(StringBuilder, String), but instead of splicing the
+     * replacements of the BodyUpdaterMarkers (TOCs, footnotes, master
+     * definition lists and indexes) into a new copy of the buffer, returns
+     * the output as views of the buffer between those markers, alternating
+     * with those replacements.
+     * <p>
+     * The specified StringBuilder, and the returned views, must not be
+     * modified while the returned parts are in use.
+     * </p>
+     *
+     * @return Parts of the output, in order
+     * @see #apply(StringBuilder, String)
+     * @since 1.4.0
+     */
+    public List<CharSequence> applyInParts(
+            StringBuilder sb, String enumerationFormats) {
+        int[] bodyUpdaterIds = applyOthers(sb, enumerationFormats);
+        List<CharSequence> parts = new ArrayList<CharSequence>();
+        int copiedTo = 0;
+        int offset;
+        StringBuilder replacement;
+        if (bodyUpdaterIds != null) for (int id : bodyUpdaterIds) {
+            offset = offsets[id];
+            if (offset < 0) continue;
+            if (BufferMarker.parseId(buffer, offset) != id)
+                throw new IllegalStateException("Marker "
+                        + markers[id] + " is not at offset " + offset);
+            if (offset > copiedTo)
+                parts.add(CharBuffer.wrap(buffer, copiedTo, offset));
+            replacement = new StringBuilder();
+            markers[id].appendReplacement(replacement);
+            if (replacement.length() > 0) parts.add(replacement.toString());
+            copiedTo = offset + BufferMarker.MARKER_LENGTH;
+        }
+        if (buffer.length() > copiedTo)
+            parts.add(CharBuffer.wrap(buffer, copiedTo, buffer.length()));
+        return parts;
+    }
+
+    /**
+     * Applies all markers other than BodyUpdaterMarkers, leaving the
+     * buffer set to the result.
+     *
+     * @return IDs of the BodyUpdaterMarkers remaining in the buffer, in
+     *         buffer order, or null if there are no markers
+     */
+    private int[] applyOthers(StringBuilder sb, String enumerationFormats) {
         if (enumerationFormats == null)
             throw new NullPointerException(
                     "enumerationFormats may not be null");
         buffer = sb;
-        for (BufferMarker m : values())
-            if (m instanceof MasterDefListMarker) {
-                masterDefListMarker = (MasterDefListMarker) m;
-            } else if (m instanceof FootNotesMarker) {
-                footNotesMarker = (FootNotesMarker) m;
-            } else if (m instanceof IndexMarker) {
-                indexMarker = (IndexMarker) m;
-            }
-
         this.enumerationFormats = enumerationFormats;
-        setContexts();
-        List<BufferMarker> sortedMarkers = new ArrayList<BufferMarker>(values());
-        Collections.sort(sortedMarkers);
-        // Can not run insert() until after the markers have been sorted.
-        if (size() < 1) return buffer;
+        if (count < 1) return null;
+        int[] orderedIds = locateMarkers();
+        List<BufferMarker> sortedMarkers =
+                new ArrayList<BufferMarker>(orderedIds.length);
+        for (int id : orderedIds) sortedMarkers.add(markers[id]);
         forwardPass1(sortedMarkers);
-        int id;
         int offset3 = -1;
         int offset2 = -1;
         int offsetNl;
@@ -134,27 +231,48 @@ public class MarkerMap extends HashMap<Integer, BufferMarker> {
         forwardPass2(sortedMarkers);
         log.debug(Integer.toString(sections.size())
                 + " Section headings: " + sections);
-        // The list of markers MUST BE REVERSE SORTED before applying.
-        // Applying in forward order would change buffer offsets.
-        Collections.reverse(sortedMarkers);
-        for (BufferMarker m : sortedMarkers)
-            // N.b. this is where the real APPLY occurs to the buffer:
-            if (!(m instanceof BodyUpdaterMarker)) m.updateBuffer();
+        // N.b. this is where the real APPLY occurs to the buffer:
+        int[] bodyUpdaterIds = splice(orderedIds, OTHER);
 
         // Can not move Entries until all of the normal \u001a markers have
         // been taken care of, because Styler directives depend on original
         // Creole sequence.
 
-        // Extract all Entries
-        offset2 = 0;
-        while ((offset2 = buffer.indexOf("\u0002", offset2)) > -1) {
-            // Load data for Entries
+        extractEntries(bodyUpdaterIds);
+
+        // TODO: Consider whether to check for \u001a's inside of Entry p's,
+        // which must be circular MasterDef or FootNotes markers.
+        return bodyUpdaterIds;
+    }
+
+    /**
+     * Moves the data of all Entries out of the buffer and into the
+     * FootNotesMarker or MasterDefListMarker, writing the remaining text to
+     * a new buffer in a single forward pass.
+     * <p>
+     * Deleting each Entry from the buffer in place instead would shift the
+     * remainder of the buffer for every Entry.
+     * </p>
+     *
+     * @param keptIds  IDs of the markers remaining in the buffer, in buffer
+     *        order.  Their offsets are updated for the new buffer, or set to
+     *        -1 for any marker inside of an Entry.
+     */
+    private void extractEntries(int[] keptIds) {
+        int offset2 = buffer.indexOf("\u0002");
+        if (offset2 < 0) return;
+        StringBuilder out = new StringBuilder(buffer.length());
+        int copiedTo = 0;
+        int removed = 0;
+        int keptIndex = 0;
+        int offset3, offsetNl;
+        EntryType eType;
+        String name;
+        for (; offset2 > -1;
+                offset2 = buffer.indexOf("\u0002", offset3 + 1)) {
             offsetNl = buffer.indexOf("\n", offset2 + 2);
             if (offsetNl < 0)
                 throw new CreoleParseException("No name termination for Entry");
-            // Unfortunately StringBuilder has no indexOf(char).
-            // We could do StringBuilder.toString().indexOf(char), but
-            // that's a pretty expensive copy operation.
             offset3 = buffer.indexOf("\u0003", offsetNl + 1);
             if (offset3 < 0)
                 throw new CreoleParseException("No termination for Entry");
@@ -181,56 +299,110 @@ public class MarkerMap extends HashMap<Integer, BufferMarker> {
                     && eType == EntryType.MASTERDEF)
                 masterDefListMarker.set(
                         name, buffer.substring(offsetNl + 1, offset3));
-            buffer.delete(offset2, offset3 +1);
+            for (; keptIndex < keptIds.length
+                    && offsets[keptIds[keptIndex]] <= offset3; keptIndex++)
+                offsets[keptIds[keptIndex]] =
+                        (offsets[keptIds[keptIndex]] < offset2)
+                        ? offsets[keptIds[keptIndex]] - removed
+                        : -1;  // Was inside of the Entry
+            out.append(buffer, copiedTo, offset2);
+            copiedTo = offset3 + 1;
+            removed += copiedTo - offset2;
         }
-
-        // TODO: Consider whether to check for \u001a's inside of Entry p's,
-        // which must be circular MasterDef or FootNotes markers.
-        setContexts();
-        Collections.sort(sortedMarkers);
-        Collections.reverse(sortedMarkers);
-        for (BufferMarker m : sortedMarkers)
-            if (m == indexMarker)
-                indexMarker.updateBuffer();
-            else if (m == footNotesMarker)
-                footNotesMarker.updateBuffer();
-            else if (m == masterDefListMarker)
-                masterDefListMarker.updateBuffer();
-        return buffer;
+        out.append(buffer, copiedTo, buffer.length());
+        for (; keptIndex < keptIds.length; keptIndex++)
+            offsets[keptIds[keptIndex]] -= removed;
+        buffer = out;
     }
 
-    private Map<String, String> nameToDefHtml = new HashMap<String, String>();
-
     /**
-     * Sets context (buffer and offset) for markers.
-     * This must be called before sorting Markers or before calling
-     * updateBuffer() on a Marker.
+     * Records the offset of every marker in the buffer, and sets the
+     * context of each marker.
+     * <p>
+     * This is the only search of the buffer text for markers.
+     * Offsets of markers which are still needed after the buffer is
+     * rewritten are recorded as the new buffer is written.
+     * </p>
      *
-     * @param bodyUpdaterMarkers If true then only update BodyUpdaterMakers,
-     *        otherwise then only update non-BodyUpdaterMarkers.
-     * @return Number of markers found
+     * @return IDs of all markers, in buffer order
+     * @throws IllegalStateException if any marker is not in the buffer
+     *         exactly once
      */
-    private void setContexts() {
-        BufferMarker marker;
-        String idString;
+    private int[] locateMarkers() {
+        int[] orderedIds = new int[count];
+        int found = 0;
         int id;
-        int offset = 0;
-        while ((offset = buffer.indexOf("\u001a", offset)) > -1) try {
-            // Unfortunately StringBuilder has no indexOf(char).
-            // We could do StringBuilder.toString().indexOf(char), but
-            // that's a pretty expensive copy operation.
-            if (buffer.length() < offset + 4)
+        Arrays.fill(offsets, 0, maxId + 1, -1);
+        // Unfortunately StringBuilder has no indexOf(char).
+        // We could do StringBuilder.toString().indexOf(char), but
+        // that's a pretty expensive copy operation.
+        for (int offset = buffer.indexOf("\u001a"); offset > -1;
+                offset = buffer.indexOf(
+                "\u001a", offset + BufferMarker.MARKER_LENGTH)) {
+            id = BufferMarker.parseId(buffer, offset);
+            if (id < 0)
                 throw new CreoleParseException(
-                        "Marking too close to end of output");
-            idString = buffer.substring(offset + 1, offset + 5);
-            id = Integer.parseInt(idString, 16);
-            marker = get(Integer.valueOf(id));
-            if (marker == null)
+                        "Malformatted marker at output offset " + offset);
+            if (get(id) == null)
                 throw new IllegalStateException("Lost marker with id " + id);
-            marker.setContext(buffer, offset);
-        } finally {
-            offset += 5;  // Move past the marker that we just found
+            if (offsets[id] > -1)
+                throw new IllegalStateException(
+                        "Marker " + markers[id] + " is in output twice");
+            offsets[id] = offset;
+            markers[id].setContext(buffer, offset);
+            orderedIds[found++] = id;
+        }
+        if (found != count)
+            for (id = 0; id <= maxId; id++)
+                if (markers[id] != null && offsets[id] < 0)
+                    throw new IllegalStateException(
+                            "Marker " + markers[id] + " missing from output");
+        return orderedIds;
+    }
+
+    /**
+     * Replaces the buffer with a new one, written in a single forward pass
+     * which copies the text between markers and appends the replacement of
+     * each marker of the specified kind in place of the marker.
+     * Markers of other kinds are copied through unchanged, and their offsets
+     * in the new buffer are recorded as they are written.
+     * <p>
+     * Replacing the markers in place instead would shift the remainder of
+     * the buffer for every marker.
+     * </p>
+     *
+     * @param orderedIds  IDs of markers in the buffer, in buffer order.
+     *        Those with a negative offset are ignored.
+     * @return IDs of the markers which were copied through, in buffer order
+     */
+    private int[] splice(int[] orderedIds, byte replaceKind) {
+        StringBuilder out = new StringBuilder(buffer.length() + 1024);
+        int[] keptIds = new int[orderedIds.length];
+        int keptCount = 0;
+        int copiedTo = 0;
+        int offset;
+        for (int id : orderedIds) {
+            offset = offsets[id];
+            if (offset < 0) continue;
+            out.append(buffer, copiedTo, offset);
+            if (kinds[id] == replaceKind) {
+                if (BufferMarker.parseId(buffer, offset) != id)
+                    throw new IllegalStateException("Marker "
+                            + markers[id] + " is not at offset " + offset);
+                markers[id].appendReplacement(out);
+                copiedTo = offset + BufferMarker.MARKER_LENGTH;
+            } else {
+                // Copied along with the following text
+                offsets[id] = out.length();
+                copiedTo = offset;
+                keptIds[keptCount++] = id;
+            }
         }
+        out.append(buffer, copiedTo, buffer.length());
+        buffer = out;
+        for (int i = 0; i < keptCount; i++)
+            markers[keptIds[i]].setContext(buffer, offsets[keptIds[i]]);
+        return Arrays.copyOf(keptIds, keptCount);
     }
 
     /**
@@ -17,8 +17,6 @@
 
 package com.admc.jcreole.marker;
 
-import java.util.Set;
-import java.util.HashSet;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Collections;
@@ -80,9 +78,8 @@ public class MasterDefListMarker extends BodyUpdaterMarker {
         targetEntry.setHtml(entryHtml);
     }
 
-    public void updateBuffer() {
-        for (Entry entry : entries) outBuffer.append(entry.toHtml("jcmdef"));
-        super.updateBuffer();
+    public void appendReplacement(StringBuilder out) {
+        for (Entry entry : entries) out.append(entry.toHtml("jcmdef"));
     }
 
     /**
@@ -94,25 +91,26 @@ public class MasterDefListMarker extends BodyUpdaterMarker {
             // Just preserve original entries order
             break;
           case REF_ORDER:
-            Set<String> loadedNames = new HashSet<String>();
+            // Entry IDs are 1-based positions in definition order
             List<Entry> origEntries = new ArrayList<Entry>(entries);
+            boolean[] placed = new boolean[origEntries.size()];
             entries.clear();
             Entry targetEntry;
             for (DeferredUrlMarker refMarker : refMarkers) {
                 // This block adds entries in reference order
                 targetEntry = origKeyToEntry.get(refMarker.getInUrl());
                 if (targetEntry == null) continue;
-                if (loadedNames.contains(refMarker.getInUrl())) continue;
-                loadedNames.add(refMarker.getInUrl());
+                if (placed[targetEntry.getEntryId() - 1]) continue;
+                placed[targetEntry.getEntryId() - 1] = true;
                 entries.add(targetEntry);
-                origEntries.remove(targetEntry);
             }
             // Remainder of this case adds non-referenced entries in original
             // definition order
-            entries.addAll(origEntries);
+            for (Entry entry : origEntries)
+                if (!placed[entry.getEntryId() - 1]) entries.add(entry);
             break;
           case NAME_BY_DICTIONARY:
-            Collections.sort(entries, DictionaryComparator.singleton);
+            DictionaryComparator.singleton.sort(entries);
             break;
           case NAME_BY_JAVA:
             Collections.sort(entries);
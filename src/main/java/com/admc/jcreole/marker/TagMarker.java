@@ -56,16 +56,13 @@ abstract public class TagMarker extends BufferMarker {
     }
 
     /**
-     * Removes the single character at the indicated point, then, if there
-     * are any class names to be written, inserts the list at that point.
+     * If there are any class names to be written, appends the list.
      */
-    public void updateBuffer() {
-        super.updateBuffer();
+    public void appendReplacement(StringBuilder out) {
         if (cssClasses.size() < 1) return;
-        String classesString = StringUtils.join(cssClasses, ' ');
-        targetSb.insert(offset, writeAttr
-                ? (" class=\"" + classesString + '\"')
-                : (" " + classesString));
+        out.append(writeAttr ? " class=\"" : " ");
+        out.append(StringUtils.join(cssClasses, ' '));
+        if (writeAttr) out.append('"');
     }
 
     public String toString() {
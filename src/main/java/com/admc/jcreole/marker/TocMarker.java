@@ -55,14 +55,13 @@ public class TocMarker extends BufferMarker {
         return "TOC Marker";
     }
 
-    public void updateBuffer() {
+    public void appendReplacement(StringBuilder out) {
         if (sectionHeadings == null)
             throw new IllegalStateException(
                     "Can't generate TOC until sectionHeadings are assigned");
         if (levelInclusions == null)
             throw new IllegalStateException(
                     "Can't generate TOC until levelInclusions is set");
-        super.updateBuffer();
-        targetSb.insert(offset, sectionHeadings.generateToc(levelInclusions));
+        out.append(sectionHeadings.generateToc(levelInclusions));
     }
 }
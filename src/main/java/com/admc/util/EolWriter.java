@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.util;
+
+import java.io.FilterWriter;
+import java.io.Writer;
+import java.io.IOException;
+
+/**
+ * A Writer filter that writes each \n as the specified line delimiter.
+ * <p>
+ * String ranges are written in place, and other CharSequence ranges are
+ * appended by copying through a small buffer, so appending part of a large
+ * String or StringBuilder allocates no String.
+ * Nothing is retained between calls, so writes may be freely interleaved
+ * with writes directly to the underlying Writer.
+ * </p>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class EolWriter extends FilterWriter {
+    private String eol;
+    private static final int BUFFER_SIZE = 4096;
+    private char[] buffer;  // Allocated when first needed
+
+    /**
+     * @param eol  Line delimiter to write for each \n.
+     *             Null to write \n's unchanged.
+     */
+    public EolWriter(Writer out, String eol) {
+        super(out);
+        this.eol = (eol == null || eol.equals("\n")) ? null : eol;
+    }
+
+    public void write(int c) throws IOException {
+        if (c == '\n' && eol != null) out.write(eol); else out.write(c);
+    }
+
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (eol == null) {
+            out.write(cbuf, off, len);
+            return;
+        }
+        int copiedTo = off;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (cbuf[i] != '\n') continue;
+            out.write(cbuf, copiedTo, i - copiedTo);
+            out.write(eol);
+            copiedTo = i + 1;
+        }
+        out.write(cbuf, copiedTo, end - copiedTo);
+    }
+
+    public void write(String str, int off, int len) throws IOException {
+        append(str, off, off + len);
+    }
+
+    public Writer append(CharSequence csq) throws IOException {
+        if (csq == null) csq = "null";
+        return append(csq, 0, csq.length());
+    }
+
+    public Writer append(CharSequence csq, int start, int end)
+            throws IOException {
+        if (csq == null) csq = "null";
+        if (csq instanceof String) {
+            // Strings are written in place, without copying
+            String str = (String) csq;
+            int copiedTo = start;
+            if (eol != null) for (int i = start; i < end; i++) {
+                if (str.charAt(i) != '\n') continue;
+                out.write(str, copiedTo, i - copiedTo);
+                out.write(eol);
+                copiedTo = i + 1;
+            }
+            out.write(str, copiedTo, end - copiedTo);
+            return this;
+        }
+        if (buffer == null) buffer = new char[BUFFER_SIZE];
+        int count;
+        for (int i = start; i < end; i += count) {
+            count = Math.min(buffer.length, end - i);
+            if (csq instanceof StringBuilder) {
+                ((StringBuilder) csq).getChars(i, i + count, buffer, 0);
+            } else {
+                for (int j = 0; j < count; j++) buffer[j] = csq.charAt(i + j);
+            }
+            write(buffer, 0, count);
+        }
+        return this;
+    }
+}
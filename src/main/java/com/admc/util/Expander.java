@@ -19,11 +19,12 @@ package com.admc.util;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Collections;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Properties;
+import java.io.IOException;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 /**
  * Expands ${references} in Strings.
@@ -58,6 +59,24 @@ import java.util.regex.Matcher;
  * <p> </p>
  * The escape mechanism is \${, \$[, \$(.  All that will happen is the
  * backslash there will be removed.
+ * <p> </p>
+ * Instances are thread-safe.
+ * Each put* call publishes a new immutable snapshot of the mappings, and
+ * expand() works from the snapshot current when it starts, without locking.
+ * So an Expander may be shared by any number of rendering threads, but
+ * put* calls are relatively expensive, and putAll should be preferred for
+ * loading many mappings.
+ * </p> <p>
+ * Values which are costly to produce may be mapped with a ValueSupplier
+ * (for a single key) or a NamespaceResolver (for all keys of a namespace,
+ * like ${ns|name}) instead of a String.
+ * These are called only when a reference to the key is expanded, and their
+ * results are memoized for the rest of that expand (or get) call, including
+ * expansions which the suppliers make themselves.
+ * To share the results across several calls, like the parts of one page
+ * rendering, pass the same Memos instance to each call.
+ * A supplier or resolver which returns null leaves the reference
+ * unsatisfied, as does one which refers to its own key.
  * </p>
  *
  * @author Blaine Simpson (blaine dot simpson at admc dot com)
@@ -65,28 +84,31 @@ import java.util.regex.Matcher;
  */
 public class Expander {
     public enum PairedDelims {
-        /** NO IDEA WHY THIS DOES NOT WORK!!
         CURLY('{', '}'), RECTANGULAR('[', ']'), ROUNDED('(', ')');
-        char lChar, rChar;
-        PairedDelims(char l, char r) {
-            lChar = l;
-            rChar = r;
-        }
-        final public Pattern refPattern = Pattern.compile(
-                "\\$\\" + lChar + "([-!])?([^" + rChar + '\\' + lChar
-                + "]+)\\" + rChar);
-        */
-        CURLY('{', "\\$\\{([-!])?([^}\\{]+)\\}"),
-        RECTANGULAR('[', "\\$\\[([-!])?([^]\\[]+)\\]"),
-        ROUNDED('(', "\\$\\(([-!])?([^)\\(]+)\\)");
 
+        final public char lChar, rChar;
+        /**
+         * @deprecated  Expansion no longer uses regexes.  Use
+         *        Expander.scan(PairedDelims, CharSequence, PartHandler).
+         *        To be removed in the release after 1.4.0.
+         */
+        @Deprecated
         final public Pattern refPattern;
         final String escapeFrom, escapeTo;
-        PairedDelims(char lChar, String s) {
-            refPattern = Pattern.compile(s);
+        PairedDelims(char lChar, char rChar) {
+            this.lChar = lChar;
+            this.rChar = rChar;
+            refPattern = Pattern.compile("\\$\\" + lChar + "([-!])?([^\\"
+                    + rChar + "\\" + lChar + "]+)\\" + rChar);
             escapeFrom = "\\$" + lChar;
             escapeTo = "$" + lChar;
         }
+
+        /**
+         * @deprecated  Expansion no longer uses this.
+         *        To be removed in the release after 1.4.0.
+         */
+        @Deprecated
         public CharSequence preserveEscapes(CharSequence s) {
             if (s instanceof String) {
                 if (((String) s).indexOf(escapeFrom) < 0) return s;
@@ -105,6 +127,12 @@ public class Expander {
                 sb.replace(lastI, lastI + 3, "\u0002");
             }
         }
+
+        /**
+         * @deprecated  Expansion no longer uses this.
+         *        To be removed in the release after 1.4.0.
+         */
+        @Deprecated
         public void escape(StringBuilder sb) {
             int lastI;
             while (true) {
@@ -119,11 +147,67 @@ public class Expander {
         pairedDelims = pd;
     }
 
+    /**
+     * Creates an empty Expander which falls back to the mappings of the
+     * specified parent for keys which are not mapped here.
+     * <p>
+     * This makes per-use Expanders cheap, since the shared mappings are not
+     * copied.
+     * Modifications of the new Expander do not affect the parent.
+     * Modifications of the parent are seen by expansions of the new
+     * Expander which start afterwards.
+     * </p>
+     *
+     * @since 1.4.0
+     */
+    public Expander(Expander parent) {
+        pairedDelims = parent.pairedDelims;
+        prefixDelimiter = parent.prefixDelimiter;
+        this.parent = parent;
+    }
+
+    /**
+     * Returns a new Expander with the same delimiters and mappings as this
+     * one currently has, which is independent of later modifications to
+     * this one.
+     *
+     * @since 1.4.0
+     */
+    public Expander copy() {
+        Expander newExpander = new Expander(pairedDelims);
+        newExpander.prefixDelimiter = prefixDelimiter;
+        newExpander.parent = parent;
+        newExpander.map = map;
+        newExpander.suppliers = suppliers;
+        newExpander.resolvers = resolvers;
+        return newExpander;
+    }
+
     private PairedDelims pairedDelims;
+    private Expander parent;
     private static Pattern
             anyIllegalCharPattern = Pattern.compile(".*[^.\\w].*");
     private static Pattern illegalCharPattern = Pattern.compile("[^.\\w]");
-    private Map<String, String> map = new HashMap<String, String>();
+    /**
+     * Immutable.  Replaced, never modified, by the put* methods.
+     */
+    private volatile Map<String, String> map = Collections.emptyMap();
+    /**
+     * Immutable.  Replaced, never modified, by putSupplier.
+     */
+    private volatile Map<String, ValueSupplier> suppliers =
+            Collections.emptyMap();
+    /**
+     * Immutable.  Replaced, never modified, by putResolver.
+     */
+    private volatile Map<String, NamespaceResolver> resolvers =
+            Collections.emptyMap();
+    /**
+     * Memos of the supplier or resolver call in progress on this thread,
+     * so that expansions made by suppliers share them.
+     */
+    private final ThreadLocal<Memos> supplyingMemos = new ThreadLocal<Memos>();
+    private final Object writeLock = new Object();
     private char prefixDelimiter = '|';
 
     public void setPrefixDelimiter(char newDelimiter) {
@@ -169,21 +253,149 @@ public class Expander {
      */
     public String put(
             String ns, String newKey, String newVal, boolean expandVal) {
-        if (ns != null && anyIllegalCharPattern.matcher(ns).matches())
+        synchronized (writeLock) {
+            Map<String, String> newMap = new HashMap<String, String>(map);
+            String retVal = put(newMap, ns, newKey, newVal, expandVal);
+            map = Collections.unmodifiableMap(newMap);
+            return retVal;
+        }
+    }
+
+    /**
+     * Adds the specified mapping to a new map which is not yet published,
+     * expanding the value with the mappings of that map.
+     */
+    private String put(Map<String, String> newMap,
+            String ns, String newKey, String newVal, boolean expandVal) {
+        String key = legalKey(newKey);
+        newMap.put(prefix(ns) + key,
+                expandVal ? expand(newVal, newMap).toString() : newVal);
+        return key.equals(newKey) ? null : key;
+    }
+
+    /**
+     * @return prefix for keys of the specified namespace
+     */
+    private String prefix(String ns) {
+        if (ns == null) return "";
+        if (anyIllegalCharPattern.matcher(ns).matches())
             throw new IllegalArgumentException(
                     "Specified namespache contains illegal character(s): "
                     + ns);
-        String prefix = (ns == null) ? "" : (ns + prefixDelimiter);
-        String retVal = null;
-        String key;
-        if (anyIllegalCharPattern.matcher(newKey).matches()) {
-            key = illegalCharPattern.matcher(newKey).replaceAll("_");
-            retVal = key;
-        } else {
-            key = newKey;
+        return ns + prefixDelimiter;
+    }
+
+    /**
+     * @return the specified key with illegal characters replaced
+     */
+    private static String legalKey(String newKey) {
+        return anyIllegalCharPattern.matcher(newKey).matches()
+                ? illegalCharPattern.matcher(newKey).replaceAll("_")
+                : newKey;
+    }
+
+    /**
+     * Values from suppliers and resolvers, by key, for the expand and get
+     * calls which they are passed to.
+     * <p>
+     * Not thread-safe.
+     * Use a new instance for each rendering, with a single Expander.
+     * </p>
+     *
+     * @see #expand(CharSequence, Appendable, Appendable, Expander.Memos)
+     * @since 1.4.0
+     */
+    public static final class Memos {
+        private Map<String, String> values = new HashMap<String, String>();
+        private Set<String> supplying = new HashSet<String>();
+    }
+
+    /**
+     * Supplies the value for a single key, on demand.
+     *
+     * @see #putSupplier(String, String, Expander.ValueSupplier)
+     * @since 1.4.0
+     */
+    public interface ValueSupplier {
+        /**
+         * @return the value, or null to leave references unsatisfied
+         */
+        String get();
+    }
+
+    /**
+     * Supplies values for the keys of a namespace, on demand.
+     *
+     * @see #putResolver(String, Expander.NamespaceResolver)
+     * @since 1.4.0
+     */
+    public interface NamespaceResolver {
+        /**
+         * @param name  The key without the namespace prefix
+         * @return the value, or null to leave references unsatisfied
+         */
+        String resolve(String name);
+    }
+
+    /**
+     * Wrapper for putSupplier(String, String, ValueSupplier),
+     * with no (null) namespace.
+     *
+     * @see #putSupplier(String, String, Expander.ValueSupplier)
+     * @since 1.4.0
+     */
+    public String putSupplier(String newKey, ValueSupplier supplier) {
+        return putSupplier(null, newKey, supplier);
+    }
+
+    /**
+     * Maps the specified key to a value which the specified supplier will
+     * provide when a reference to the key is first expanded.
+     * <p>
+     * See Class level Javadoc about memoization.
+     * A String mapping of the same key, by this Expander, takes precedence.
+     * </p>
+     *
+     * @param ns  Namespace prefixed (with prefixDelimiter) to key.
+     * @return Actual key name added, without prefix (if any), if key changed.
+     * @see #put(String, String, String, boolean)
+     * @since 1.4.0
+     */
+    public String putSupplier(
+            String ns, String newKey, ValueSupplier supplier) {
+        String key = legalKey(newKey);
+        synchronized (writeLock) {
+            Map<String, ValueSupplier> newSuppliers =
+                    new HashMap<String, ValueSupplier>(suppliers);
+            newSuppliers.put(prefix(ns) + key, supplier);
+            suppliers = Collections.unmodifiableMap(newSuppliers);
+        }
+        return key.equals(newKey) ? null : key;
+    }
+
+    /**
+     * Maps all keys of the specified namespace, which are not otherwise
+     * mapped by this Expander, to values which the specified resolver will
+     * provide when a reference to the key is first expanded.
+     * <p>
+     * For example, a resolver for namespace 'sys' resolves ${sys|name} by
+     * being called with 'name'.
+     * See Class level Javadoc about memoization.
+     * </p>
+     *
+     * @since 1.4.0
+     */
+    public void putResolver(String ns, NamespaceResolver resolver) {
+        if (anyIllegalCharPattern.matcher(ns).matches())
+            throw new IllegalArgumentException(
+                    "Specified namespache contains illegal character(s): "
+                    + ns);
+        synchronized (writeLock) {
+            Map<String, NamespaceResolver> newResolvers =
+                    new HashMap<String, NamespaceResolver>(resolvers);
+            newResolvers.put(ns, resolver);
+            resolvers = Collections.unmodifiableMap(newResolvers);
         }
-        map.put(prefix + key, expandVal ? expand(newVal).toString() : newVal);
-        return retVal;
     }
 
     /**
@@ -215,11 +427,15 @@ public class Expander {
             String ns, Properties ps, boolean expandVals) {
         String changedKey;
         Map<String, String> renameMap = new HashMap<String, String>();
-        for (Map.Entry entry : ps.entrySet()) {
-            changedKey = put(ns, entry.getKey().toString(),
-                    entry.getValue().toString(), expandVals);
-            if (changedKey != null)
-                renameMap.put(entry.getKey().toString(), changedKey);
+        synchronized (writeLock) {
+            Map<String, String> newMap = new HashMap<String, String>(map);
+            for (Map.Entry entry : ps.entrySet()) {
+                changedKey = put(newMap, ns, entry.getKey().toString(),
+                        entry.getValue().toString(), expandVals);
+                if (changedKey != null)
+                    renameMap.put(entry.getKey().toString(), changedKey);
+            }
+            map = Collections.unmodifiableMap(newMap);
         }
         return renameMap;
     }
@@ -238,9 +454,15 @@ public class Expander {
             String ns, Map<String, String> inMap, boolean expandVals) {
         String changedKey;
         Map<String, String> renameMap = new HashMap<String, String>();
-        for (Map.Entry<String, String> entry : inMap.entrySet()) {
-            changedKey = put(ns, entry.getKey(), entry.getValue(), expandVals);
-            if (changedKey != null) renameMap.put(entry.getKey(), changedKey);
+        synchronized (writeLock) {
+            Map<String, String> newMap = new HashMap<String, String>(map);
+            for (Map.Entry<String, String> entry : inMap.entrySet()) {
+                changedKey = put(newMap,
+                        ns, entry.getKey(), entry.getValue(), expandVals);
+                if (changedKey != null)
+                    renameMap.put(entry.getKey(), changedKey);
+            }
+            map = Collections.unmodifiableMap(newMap);
         }
         return renameMap;
     }
@@ -254,46 +476,336 @@ public class Expander {
         return expand(inString).toString();
     }
 
+    /**
+     * @param localMap  The mappings of this Expander to use
+     * @return the value for the specified key from the nearest of this
+     *         Expander and its ancestors which maps it, or null if none
+     *         does.
+     */
+    private String lookup(
+            String key, Map<String, String> localMap, Memos memos) {
+        String value;
+        for (Expander e = this; e != null; e = e.parent) {
+            value = ((e == this) ? localMap : e.map).get(key);
+            if (value != null) return value;
+            if (e.suppliers.containsKey(key) || e.resolverFor(key) != null)
+                return supplied(key, e, memos);
+        }
+        return null;
+    }
+
+    /**
+     * @return the Memos of the supplier call in progress on this thread,
+     *         if any, else new Memos
+     */
+    private Memos currentMemos() {
+        Memos memos = supplyingMemos.get();
+        return (memos == null) ? new Memos() : memos;
+    }
+
+    /**
+     * @return the resolver of this Expander for the namespace of the
+     *         specified key, or null
+     */
+    private NamespaceResolver resolverFor(String key) {
+        if (resolvers.isEmpty()) return null;
+        int i = key.indexOf(prefixDelimiter);
+        return (i < 1) ? null : resolvers.get(key.substring(0, i));
+    }
+
+    /**
+     * @param source  This Expander or an ancestor, with a supplier or
+     *        resolver for the specified key
+     * @return memoized value, or null if it was supplied as null
+     */
+    private String supplied(String key, Expander source, Memos memos) {
+        if (memos.values.containsKey(key)) return memos.values.get(key);
+        // A value which refers to itself is unsatisfied, not recursive
+        if (!memos.supplying.add(key)) return null;
+        Memos outerMemos = supplyingMemos.get();
+        supplyingMemos.set(memos);
+        String value;
+        try {
+            ValueSupplier supplier = source.suppliers.get(key);
+            value = (supplier != null) ? supplier.get()
+                    : source.resolverFor(key).resolve(
+                    key.substring(key.indexOf(prefixDelimiter) + 1));
+        } finally {
+            memos.supplying.remove(key);
+            if (outerMemos == null) supplyingMemos.remove();
+            else supplyingMemos.set(outerMemos);
+        }
+        memos.values.put(key, value);
+        return value;
+    }
+
+    /**
+     * @return the value mapped to the specified key by this Expander or by
+     *         the nearest ancestor which maps it, or null if none does.
+     * @since 1.4.0
+     */
+    public String get(String key) {
+        return lookup(key, map, currentMemos());
+    }
+
+    /**
+     * Same as get(String), but memoizes supplied values in the specified
+     * Memos.
+     *
+     * @since 1.4.0
+     */
+    public String get(String key, Memos memos) {
+        return lookup(key, map, memos);
+    }
+
     /**
      * @throws IllegalArgumentException if inString contains an unsatisfied
      *         ! reference (like ${!ref}).
      */
-    synchronized public StringBuilder expand(CharSequence inString) {
-        Set<String> throwRefs = new HashSet<String>();
-        CharSequence seq = pairedDelims.preserveEscapes(inString);
-        Matcher matcher = pairedDelims.refPattern.matcher(seq);
-        int prevEnd = 0;
-        String val;
-        StringBuilder sb = new StringBuilder();
-        while (matcher.find()) {
-            if (throwRefs.size() < 1)
-                sb.append(seq.subSequence(prevEnd, matcher.start()));
-            prevEnd = matcher.end();
-            if (map.containsKey(matcher.group(2))) {
-                if (throwRefs.size() < 1) sb.append(map.get(matcher.group(2)));
+    public StringBuilder expand(CharSequence inString) {
+        return expand(inString, map);
+    }
+
+    /**
+     * Same contract as expand(CharSequence), but writes the output to the
+     * specified Appendable as it is generated.
+     * <p>
+     * If an unsatisfied ! reference is encountered, output stops there, and
+     * IllegalArgumentException is thrown after the remainder of the input
+     * has been checked for more unsatisfied ! references.
+     * </p>
+     *
+     * @throws IllegalArgumentException if inString contains an unsatisfied
+     *         ! reference (like ${!ref}).
+     * @since 1.4.0
+     */
+    public void expand(CharSequence inString, Appendable out)
+            throws IOException {
+        expand(inString, out, out);
+    }
+
+    /**
+     * Same as expand(CharSequence, Appendable), but writes mapped values to
+     * valueOut and all other output to textOut.
+     * <p>
+     * This allows for transforming the text but not the values, or vice
+     * versa.
+     * </p>
+     *
+     * @throws IllegalArgumentException if inString contains an unsatisfied
+     *         ! reference (like ${!ref}).
+     * @since 1.4.0
+     */
+    public void expand(CharSequence inString,
+            Appendable textOut, Appendable valueOut) throws IOException {
+        expand(inString, textOut, valueOut, currentMemos());
+    }
+
+    /**
+     * Same as expand(CharSequence, Appendable, Appendable), but memoizes
+     * supplied values in the specified Memos.
+     *
+     * @since 1.4.0
+     */
+    public void expand(CharSequence inString, Appendable textOut,
+            Appendable valueOut, Memos memos) throws IOException {
+        ExpandingHandler handler =
+                new ExpandingHandler(map, memos, textOut, valueOut);
+        scan(pairedDelims, inString, handler);
+        handler.finish();
+    }
+
+    /**
+     * @param localMap  The mappings of this Expander to use
+     */
+    private StringBuilder expand(
+            CharSequence inString, Map<String, String> localMap) {
+        StringBuilder sb = new StringBuilder(inString.length() + 256);
+        ExpandingHandler handler =
+                new ExpandingHandler(localMap, currentMemos(), sb, sb);
+        try {
+            scan(pairedDelims, inString, handler);
+        } catch (IOException ioe) {
+            throw new RuntimeException(
+                    "StringBuilder append threw: " + ioe, ioe);
+        }
+        handler.finish();
+        return sb;
+    }
+
+    /**
+     * Receives the parts of scanned text, in order.
+     *
+     * @see #scan(PairedDelims, CharSequence, PartHandler)
+     * @since 1.4.0
+     */
+    public interface PartHandler {
+        /**
+         * Text which contains no references.
+         * Escapes (like \${) have been replaced by what they escape.
+         */
+        void text(CharSequence cs, int start, int end) throws IOException;
+
+        /**
+         * A reference, like ${name} or ${!name}.
+         *
+         * @param name  null if the name contains an escape, in which case
+         *        no mapping can satisfy the reference
+         * @param flag  '!', '-', or 0 for none
+         * @param start  Offset in cs of the '$' of the reference
+         * @param end  Offset in cs just past the end of the reference
+         * @see Expander#appendUnescaped(
+         *      Appendable, CharSequence, int, int, char)
+         */
+        void reference(String name, char flag,
+                CharSequence cs, int start, int end) throws IOException;
+    }
+
+    /**
+     * Scans the specified text in one forward pass, sending the text
+     * between references and the references themselves to the specified
+     * handler in order.
+     * <p>
+     * This is the parsing used by the expand methods, for callers which
+     * want to handle references themselves, for example to compile a
+     * template once and then render it many times.
+     * </p>
+     *
+     * @since 1.4.0
+     */
+    public static void scan(PairedDelims pairedDelims,
+            CharSequence inString, PartHandler handler) throws IOException {
+        final char lChar = pairedDelims.lChar;
+        final char rChar = pairedDelims.rChar;
+        final int len = inString.length();
+        int copiedTo = 0;  // Text before this offset is handled
+        int i = 0;
+        int nameStart, j;
+        char flag;
+        boolean hasEscape;
+        while (i < len) {
+            switch (inString.charAt(i)) {
+              case '\\':
+                if (!isEscape(inString, i, lChar)) break;
+                handler.text(inString, copiedTo, i);
+                handler.text(inString, i + 1, i + 3);
+                i += 3;
+                copiedTo = i;
                 continue;
-            }
-            if (matcher.group(1) == null) {
-                if (throwRefs.size() < 1) sb.append(matcher.group(0));
+              case '$':
+                if (i + 1 >= len || inString.charAt(i + 1) != lChar) break;
+                // Find end of reference, if this is one
+                j = i + 2;
+                flag = (j < len) ? inString.charAt(j) : 0;
+                if (flag == '-' || flag == '!') j++; else flag = 0;
+                nameStart = j;
+                hasEscape = false;
+                while (j < len && inString.charAt(j) != rChar) {
+                    if (inString.charAt(j) == lChar) {
+                        j = len;  // Not a reference
+                    } else if (isEscape(inString, j, lChar)) {
+                        hasEscape = true;
+                        j += 3;
+                    } else {
+                        j++;
+                    }
+                }
+                if (j >= len) break;
+                if (j == nameStart) {
+                    if (flag == 0) break;
+                    flag = 0;  // Flag char is the whole name
+                    nameStart--;
+                }
+                handler.text(inString, copiedTo, i);
+                copiedTo = j + 1;
+                // Keys never contain escapes
+                handler.reference(hasEscape
+                        ? null : inString.subSequence(nameStart, j).toString(),
+                        flag, inString, i, copiedTo);
+                i = copiedTo;
                 continue;
             }
-            switch (matcher.group(1).charAt(0)) {
-              case '!':
-                throwRefs.add(matcher.group(2));
-                break;
-              case '-':
-                break;
-              default:
-                throw new RuntimeException(
-                      "Unexpected behavior pref string: " + matcher.group(1));
+            i++;
+        }
+        handler.text(inString, copiedTo, len);
+    }
+
+    /**
+     * Handles parts by expanding references with a snapshot of mappings.
+     */
+    private class ExpandingHandler implements PartHandler {
+        private Map<String, String> localMap;
+        private Memos memos;
+        private Appendable textOut, valueOut;
+        private Set<String> throwRefs;
+
+        /**
+         * @param textOut  Destination for text which is not a mapped value
+         * @param valueOut  Destination for mapped values
+         */
+        private ExpandingHandler(Map<String, String> localMap, Memos memos,
+                Appendable textOut, Appendable valueOut) {
+            this.localMap = localMap;
+            this.memos = memos;
+            this.textOut = textOut;
+            this.valueOut = valueOut;
+        }
+
+        public void text(CharSequence cs, int start, int end)
+                throws IOException {
+            if (throwRefs == null && start < end)
+                textOut.append(cs, start, end);
+        }
+
+        public void reference(String name, char flag,
+                CharSequence cs, int start, int end) throws IOException {
+            String value =
+                    (name == null) ? null : lookup(name, localMap, memos);
+            if (value != null) {
+                if (throwRefs == null) valueOut.append(value);
+            } else if (flag == 0) {
+                if (throwRefs == null) appendUnescaped(
+                        textOut, cs, start, end, pairedDelims.lChar);
+            } else if (flag == '!') {
+                if (throwRefs == null) throwRefs = new HashSet<String>();
+                throwRefs.add((name == null)
+                        ? cs.subSequence(start, end).toString() : name);
             }
         }
-        if (throwRefs.size() > 0)
-            throw new IllegalArgumentException(
-                    "Unsatisfied ! reference(s): " + throwRefs);
-        sb.append(seq.subSequence(prevEnd, seq.length()));
-        pairedDelims.escape(sb);
-        return sb;
+
+        private void finish() {
+            if (throwRefs != null)
+                throw new IllegalArgumentException(
+                        "Unsatisfied ! reference(s): " + throwRefs);
+        }
+    }
+
+    /**
+     * @return true if an escape (like \${) starts at the specified offset
+     */
+    private static boolean isEscape(CharSequence cs, int offset, char lChar) {
+        return offset + 2 < cs.length() && cs.charAt(offset) == '\\'
+                && cs.charAt(offset + 1) == '$'
+                && cs.charAt(offset + 2) == lChar;
+    }
+
+    /**
+     * Appends the specified range with escapes (like \${) replaced by what
+     * they escape.
+     *
+     * @since 1.4.0
+     */
+    public static void appendUnescaped(Appendable out,
+            CharSequence cs, int start, int end, char lChar)
+            throws IOException {
+        int copiedTo = start;
+        for (int i = start; i < end; i++) {
+            if (!isEscape(cs, i, lChar)) continue;
+            out.append(cs, copiedTo, i);
+            copiedTo = i + 1;  // Drop just the backslash
+            i += 2;
+        }
+        out.append(cs, copiedTo, end);
     }
 
     static public void main(String[] sa) {
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.util;
+
+import java.io.IOException;
+
+/**
+ * Single-pass HTML escaper for element content and attribute values.
+ * <p>
+ * Escapes only the characters which HTML requires be escaped:
+ * &amp;, &lt;, &gt; and &quot;.
+ * An &amp; which begins an entity or character reference of the form
+ * &amp;word; is preserved, so authors may use entities.
+ * All other characters, including non-ASCII characters, are passed through
+ * as-is, so output must be written with an encoding which can represent them
+ * (JCreole uses UTF-8 throughout).
+ * </p>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class HtmlEscaper {
+    /**
+     * This class provides only static methods.  Do not instantiate.
+     */
+    private HtmlEscaper() { }
+
+    /**
+     * @return the specified input as a String if it needs no escaping,
+     *         otherwise a new escaped String
+     */
+    public static String escape(CharSequence s) {
+        int i = indexOfEscape(s, 0);
+        if (i < 0) return s.toString();
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        try {
+            escape(s, sb, i);
+        } catch (IOException ioe) {
+            // A StringBuilder never throws
+            throw new IllegalStateException(ioe);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes escaped input to the specified StringBuilder.
+     *
+     * @return the specified StringBuilder
+     */
+    public static StringBuilder escape(CharSequence s, StringBuilder sb) {
+        try {
+            escape(s, sb, indexOfEscape(s, 0));
+        } catch (IOException ioe) {
+            // A StringBuilder never throws
+            throw new IllegalStateException(ioe);
+        }
+        return sb;
+    }
+
+    /**
+     * Writes escaped input to the specified Appendable, in runs between the
+     * characters needing escaping.
+     *
+     * @return the specified Appendable
+     */
+    public static <A extends Appendable> A escape(CharSequence s, A out)
+            throws IOException {
+        escape(s, out, indexOfEscape(s, 0));
+        return out;
+    }
+
+    /**
+     * @param i Index of the first char needing escaping, or -1
+     */
+    private static void escape(CharSequence s, Appendable out, int i)
+            throws IOException {
+        int start = 0;
+        while (i > -1) {
+            out.append(s, start, i);
+            switch (s.charAt(i)) {
+              case '&':
+                out.append("&amp;");
+                break;
+              case '<':
+                out.append("&lt;");
+                break;
+              case '>':
+                out.append("&gt;");
+                break;
+              default:
+                out.append("&quot;");
+                break;
+            }
+            start = i + 1;
+            i = indexOfEscape(s, start);
+        }
+        out.append(s, start, s.length());
+    }
+
+    /**
+     * @return index of first char at or after from which must be escaped,
+     *         or -1
+     */
+    private static int indexOfEscape(CharSequence s, int from) {
+        int len = s.length();
+        char c;
+        for (int i = from; i < len; i++) {
+            c = s.charAt(i);
+            if (c > '>') continue;  // Fast path for most text
+            switch (c) {
+              case '<':
+              case '>':
+              case '"':
+                return i;
+              case '&':
+                if (!isEntityStart(s, i)) return i;
+                break;
+              default:
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the & at the specified index begins &amp;word;, where word
+     * chars are as regular expression \w.
+     */
+    private static boolean isEntityStart(CharSequence s, int ampIndex) {
+        int len = s.length();
+        int i = ampIndex + 1;
+        while (i < len && isWordChar(s.charAt(i))) i++;
+        return i > ampIndex + 1 && i < len && s.charAt(i) == ';';
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9') || c == '_';
+    }
+}
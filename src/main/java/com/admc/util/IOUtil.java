@@ -23,6 +23,14 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.BufferedReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -38,6 +46,13 @@ import org.apache.commons.logging.LogFactory;
  */
 public class IOUtil {
     private static Log log = LogFactory.getLog(IOUtil.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Files at least this large are memory-mapped rather than read.
+     * Mapping has high fixed costs, so it only pays off for large files.
+     */
+    public static final int MAP_THRESHOLD = 256 * 1024;
 
     /**
      * This class provides only static methods.  Do not instantiate.
@@ -45,11 +60,69 @@ public class IOUtil {
     private IOUtil() { }
 
     public static String toString(File file) throws IOException {
-        return IOUtil.toString(new FileInputStream(file), 10240);
+        CharBuffer cb = IOUtil.toCharBuffer(file, null);
+        return new String(cb.array(), 0, cb.limit());
     }
 
     public static StringBuilder toStringBuilder(File file) throws IOException {
-        return IOUtil.toStringBuilder(new FileInputStream(file), 10240);
+        CharBuffer cb = IOUtil.toCharBuffer(file, null);
+        return new StringBuilder(cb.limit()).append(cb.array(), 0, cb.limit());
+    }
+
+    /**
+     * Decodes the specified UTF-8 file straight into a char array, using NIO.
+     * <p>
+     * The char array is sized from the file length up front (UTF-8 never
+     * decodes to more chars than bytes), so there is no buffer growing or
+     * intermediate copying.
+     * Files of MAP_THRESHOLD bytes or more are memory-mapped instead of
+     * being read into a heap byte buffer.
+     * Malformed input is replaced just like InputStreamReader does.
+     * </p>
+     *
+     * @param charBuffer  Array to decode into if it is large enough, else
+     *                    (including if null) a new array is allocated.
+     * @return CharBuffer backed by the used array, with position 0 and limit
+     *         at the end of the decoded chars.
+     * @see #MAP_THRESHOLD
+     */
+    public static CharBuffer toCharBuffer(File file, char[] charBuffer)
+            throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel channel = fis.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File too large: " + file.getPath());
+            ByteBuffer byteBuffer;
+            if (size < MAP_THRESHOLD) {
+                byteBuffer = ByteBuffer.allocate((int) size);
+                while (byteBuffer.hasRemaining()
+                        && channel.read(byteBuffer) > -1) ;
+                byteBuffer.flip();
+            } else {
+                byteBuffer =
+                        channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+            }
+            CharBuffer cb = CharBuffer.wrap(
+                    (charBuffer != null && charBuffer.length >= size)
+                    ? charBuffer : new char[(int) size]);
+            CharsetDecoder decoder = UTF8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CoderResult result = decoder.decode(byteBuffer, cb, true);
+            if (!result.isUnderflow()) result.throwException();
+            result = decoder.flush(cb);
+            if (!result.isUnderflow()) result.throwException();
+            cb.flip();
+            return cb;
+        } finally {
+            try {
+                fis.close();
+            } catch (IOException ioe) {
+                log.error("Failed to close file input stream", ioe);
+            }
+        }
     }
 
     /**
@@ -70,6 +143,22 @@ public class IOUtil {
         return IOUtil.toStringBuilder(inputStream, bufferChars).toString();
     }
 
+    /**
+     * Generates a StringBuilder from the remaining content of the specified
+     * Reader.
+     * Unlike the InputStream methods, this does not close the Reader.
+     *
+     * @since 1.4.0
+     */
+    public static StringBuilder toStringBuilder(Reader reader)
+            throws IOException {
+        char[] buffer = new char[10240];
+        int i;
+        StringBuilder sb = new StringBuilder();
+        while ((i = reader.read(buffer)) > -1) sb.append(buffer, 0, i);
+        return sb;
+    }
+
     /**
      * Wrapper for toStringBuilder(InputStream, int) with buffer size of
      * 10240 characters.
@@ -107,4 +196,35 @@ public class IOUtil {
         }
         return sb;
     }
+
+    /**
+     * Removes \r's from the specified range of the buffer, and either
+     * removes or rejects all other control characters except for \n and
+     * \t, in place in a single forward pass.
+     *
+     * @param doClean If true will silently remove illegal input characters.
+     *                If false, will throw if encounter any illegal input char.
+     * @param inOffset  Input position of buf[off], only for error reporting
+     * @return  index following the last retained character
+     * @throws IllegalArgumentException if doClean is false and an illegal
+     *         control character is encountered.
+     * @since 1.4.0
+     */
+    public static int filterControlChars(char[] buf, int off, int len,
+            boolean doClean, long inOffset) {
+        int outIndex = off;
+        char c;
+        for (int i = off; i < off + len; i++) {
+            c = buf[i];
+            if (c == '\r') continue;
+            if (c != '\n' && c != '\t' && Character.isISOControl(c)) {
+                if (doClean) continue;
+                throw new IllegalArgumentException(String.format(
+                        "Illegal input char 0x%04X at position %d",
+                        (int) c, inOffset + i - off));
+            }
+            buf[outIndex++] = c;
+        }
+        return outIndex;
+    }
 }
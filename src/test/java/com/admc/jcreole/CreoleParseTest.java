@@ -49,6 +49,23 @@ public class CreoleParseTest {
     private static final String nCreoleInRootPath = nCreoleInRoot.getPath();
     private static String FSEP = System.getProperty("file.separator");
 
+    private static final InterWikiMapper interWikiMapper =
+            new InterWikiMapper() {
+        // Use wiki name of "Nil" to force lookup failure for path.
+        public String toPath(String wikiName, String wikiPage) {
+            if (wikiName != null && wikiName.equals("Nil")) return null;
+            return "{WIKI-LINK to: " + wikiName + '|' + wikiPage + '}';
+        }
+        // Use wiki page of "nil" to force lookup failure for label.
+        public String toLabel(String wikiName, String wikiPage) {
+            if (wikiPage == null)
+                throw new RuntimeException(
+                        "Null page name sent to InterWikiMapper");
+            if (wikiPage.equals("nil")) return null;
+            return "{LABEL for: " + wikiName + '|' + wikiPage + '}';
+        }
+    };
+
     public CreoleParseTest(File creoleFile,
             File htmlExpectFile, File htmlFile, Boolean doSucceed) {
         this.creoleFile = creoleFile;
@@ -124,21 +141,7 @@ public class CreoleParseTest {
                     JCreolePrivilege.STYLER
             ));
             */
-            parser.setInterWikiMapper(new InterWikiMapper() {
-                // Use wiki name of "Nil" to force lookup failure for path.
-                public String toPath(String wikiName, String wikiPage) {
-                    if (wikiName != null && wikiName.equals("Nil")) return null;
-                    return "{WIKI-LINK to: " + wikiName + '|' + wikiPage + '}';
-                }
-                // Use wiki page of "nil" to force lookup failure for label.
-                public String toLabel(String wikiName, String wikiPage) {
-                    if (wikiPage == null)
-                        throw new RuntimeException(
-                                "Null page name sent to InterWikiMapper");
-                    if (wikiPage.equals("nil")) return null;
-                    return "{LABEL for: " + wikiName + '|' + wikiPage + '}';
-                }
-            });
+            parser.setInterWikiMapper(interWikiMapper);
             retVal = parser.parse(
                     CreoleScanner.newCreoleScanner(creoleFile, false, null));
         } catch (Exception e) {
@@ -160,6 +163,36 @@ public class CreoleParseTest {
     }
 
 
+    /**
+     * Parses the positive corpus without tag markers where the input has no
+     * directives which need them, as JCreole does, which must not change
+     * the output.
+     */
+    @org.junit.Test
+    public void parseWithoutTagMarkersTest() throws IOException {
+        if (!shouldSucceed || htmlExpectFile == null) return;
+        CreoleScanner scanner =
+                CreoleScanner.newCreoleScanner(creoleFile, false, null);
+        if (scanner.hasTagDirectives()) return;  // Covered by parseTest
+        CreoleParser parser = new CreoleParser();
+        parser.setPrivileges(EnumSet.allOf(JCreolePrivilege.class));
+        parser.setInterWikiMapper(interWikiMapper);
+        parser.setMarkTags(false);
+        Object retVal;
+        try {
+            retVal = parser.parse(scanner);
+        } catch (Exception e) {
+            AssertionError ae =
+                    new AssertionError("Failed to parse '" + creoleFile + "'");
+            ae.initCause(e);
+            throw ae;
+        }
+        assertEquals("From '" + creoleFile + "' without tag markers",
+                FileUtils.readFileToString(htmlExpectFile, "UTF-8"),
+                (retVal == null) ? "" : ((WashedSymbol) retVal).toString());
+    }
+
+
     public static void main(String args[]) {
         org.junit.runner.JUnitCore.main(CreoleParseTest.class.getName());
     }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import com.admc.util.IOUtil;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class CreoleScannerTest {
+    private static final File refFile =
+            new File("src/main/resources/jcreole-ref.creole");
+
+    private static List<String> scan(CreoleScanner scanner)
+            throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        Token token;
+        do {
+            token = scanner.nextToken();
+            tokens.add(token.getId() + "@" + token.getOffset() + '/'
+                    + token.getLine() + ':' + token.getColumn()
+                    + '=' + token.getStringVal());
+        } while (token.getId() != Terminals.EOF);
+        return tokens;
+    }
+
+    @org.junit.Test
+    public void reset() throws IOException {
+        StringBuilder refSb = IOUtil.toStringBuilder(refFile);
+        List<String> expected = scan(
+                CreoleScanner.newCreoleScanner(refSb, false, null));
+
+        // Reuse a scanner which has previously scanned other input, both
+        // partially and fully, longer and shorter than the target.
+        CreoleScanner scanner = CreoleScanner.newCreoleScanner(
+                new StringBuilder(refSb).append(refSb), false, null);
+        scanner.nextToken();
+        scanner.nextToken();
+        assertEquals(expected, scan(scanner.reset(refSb, false, null)));
+        scan(scanner.reset(new StringBuilder("= Heading\r\n"), false, null));
+        assertEquals(expected, scan(scanner.reset(refSb, false, null)));
+        assertEquals("Input StringBuilder modified",
+                IOUtil.toStringBuilder(refFile).toString(), refSb.toString());
+    }
+
+    @org.junit.Test
+    public void untracked() throws IOException {
+        StringBuilder refSb = IOUtil.toStringBuilder(refFile);
+        CreoleScanner scanner =
+                CreoleScanner.newCreoleScanner(refSb, false, null);
+        UntrackedCreoleScanner untrackedScanner =
+                UntrackedCreoleScanner.newCreoleScanner(refSb, false, null);
+        Token token, untrackedToken;
+        do {
+            token = scanner.nextToken();
+            untrackedToken = untrackedScanner.nextToken();
+            assertEquals(token.getId(), untrackedToken.getId());
+            assertEquals(token.getStringVal(), untrackedToken.getStringVal());
+            assertEquals(token.getIntParam(), untrackedToken.getIntParam());
+        } while (token.getId() != Terminals.EOF);
+    }
+
+    @org.junit.Test
+    public void untrackedFailure() throws IOException {
+        JCreole jCreole = new JCreole();
+        jCreole.setTrackPositions(false);
+        assertEquals("<p>one</p>\n",
+                jCreole.parseCreole(new StringBuilder("one\n")));
+        try {
+            jCreole.parseCreole(new StringBuilder("one\n\ntwo <<bogus>>\n"));
+            fail("Parsed unknown plugin");
+        } catch (CreoleParseException cpe) {
+            assertEquals(2, cpe.getLine());
+            assertEquals(4, cpe.getColumn());
+        }
+    }
+
+    @org.junit.Test(expected=IllegalArgumentException.class)
+    public void illegalChar() throws IOException {
+        CreoleScanner.newCreoleScanner(
+                new StringBuilder("one\r\ntwo\u0007\n"), false, null);
+    }
+
+    private static boolean hasTagDirectives(String s) throws IOException {
+        return CreoleScanner.newCreoleScanner(
+                new StringBuilder(s), false, null).hasTagDirectives();
+    }
+
+    @org.junit.Test
+    public void tagDirectives() throws IOException {
+        assertFalse(hasTagDirectives("= One\n\n**two** <<toc>>\n"));
+        assertFalse(hasTagDirectives("one <<"));
+        assertTrue(hasTagDirectives("one <<addClass =block x>>\n"));
+        assertTrue(hasTagDirectives("one << \n addClass =block x>>\n"));
+        assertTrue(hasTagDirectives("<<[ x>>\none\n<<]>>\n"));
+        assertTrue(hasTagDirectives("one <<{x>>two<<}>>\n"));
+        CreoleScanner scanner = CreoleScanner.newCreoleScanner(
+                new StringBuilder("<<{x>>two<<}>>\n"), false, null);
+        scanner.reset(new StringBuilder("two\n"), false, null);
+        assertFalse(scanner.hasTagDirectives());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+import java.text.Collator;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class DictionaryComparatorTest {
+    private static List<String> randomStrings() {
+        Random random = new Random(513);
+        String chars = "aAbBeE \u00e9\u00c9z";
+        List<String> list = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.setLength(0);
+            for (int j = random.nextInt(5); j >= 0; j--)
+                sb.append(chars.charAt(random.nextInt(chars.length())));
+            list.add(sb.toString());
+        }
+        return list;
+    }
+
+    @org.junit.Test
+    public void keyedSortMatchesCompare() {
+        List<String> expected = randomStrings();
+        List<String> actual = new ArrayList<String>(expected);
+        Collections.sort(expected, DictionaryComparator.singleton);
+        DictionaryComparator.singleton.sort(actual);
+        assertEquals(expected, actual);
+    }
+
+    @org.junit.Test
+    public void collatedSortMatchesCompare() {
+        DictionaryComparator comparator =
+                new DictionaryComparator(Collator.getInstance(Locale.FRENCH));
+        List<String> expected = randomStrings();
+        List<String> actual = new ArrayList<String>(expected);
+        Collections.sort(expected, comparator);
+        comparator.sort(actual);
+        assertEquals(expected, actual);
+    }
+
+    @org.junit.Test
+    public void collatorTieBreak() {
+        Collator collator = Collator.getInstance(Locale.FRENCH);
+        collator.setStrength(Collator.PRIMARY);
+        List<String> list = new ArrayList<String>(Arrays.asList(
+                "f", "\u00c9t\u00e9", "Ete", "ete", "\u00e9t\u00e9", "d"));
+        new DictionaryComparator(collator).sort(list);
+        // Collator puts accented e's with e's, then case tie-breaks apply
+        assertEquals(Arrays.asList(
+                "d", "ete", "Ete", "\u00e9t\u00e9", "\u00c9t\u00e9", "f"),
+                list);
+    }
+}
@@ -20,6 +20,13 @@ package com.admc.jcreole;
 import static org.junit.Assert.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.InputStreamReader;
+import java.io.FileInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.EnumSet;
 import com.admc.util.IOUtil;
 
 /**
@@ -43,6 +50,35 @@ public class FullPageTest {
                 IOUtil.toString(expectFile), IOUtil.toString(outFile));
     }
 
+    /**
+     * Streaming a document with TOCs, footnotes and indexes, which are
+     * written between views of the parser output, gives the same page.
+     */
+    @org.junit.Test
+    public void renderMatchesPostProcess() throws IOException {
+        File inCreoleFile = new File("src/main/resources/jcreole-ref.creole");
+        JCreole jCreole = new JCreole(IOUtil.toString(
+                new File("src/test/data/fullpage/in/bplate.html")));
+        jCreole.setPrivileges(EnumSet.allOf(JCreolePrivilege.class));
+        jCreole.getHtmlExpander().put("pageTitle", "Reference");
+        String expected = jCreole.postProcess(jCreole.parseCreole(
+                IOUtil.toStringBuilder(inCreoleFile)), "\r\n");
+        StringWriter writer = new StringWriter();
+        Reader reader = new InputStreamReader(
+                new FileInputStream(inCreoleFile), "UTF-8");
+        try {
+            jCreole.render(reader, "\r\n", writer);
+        } finally {
+            reader.close();
+        }
+        assertEquals(expected, writer.toString());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        jCreole.render(new StringReader("==Heading\n\n<<toc>>\nText"),
+                null, baos);
+        jCreole.render(new StringReader("==Heading\n\n<<toc>>\nText"),
+                null, writer);
+        assertTrue(writer.toString().endsWith(baos.toString("UTF-8")));
+    }
 
     public static void main(String args[]) {
         org.junit.runner.JUnitCore.main(FullPageTest.class.getName());
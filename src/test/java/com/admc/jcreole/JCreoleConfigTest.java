@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.admc.util.IOUtil;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class JCreoleConfigTest {
+    private static final File refFile =
+            new File("src/main/resources/jcreole-ref.creole");
+    private static final String BOILERPLATE =
+            "<title>${siteName}: ${pageTitle}</title>\n$(pageHeaders)"
+            + "$(!pageContent)";
+
+    private static JCreoleConfig.Builder newBuilder() {
+        JCreoleConfig.Builder builder = new JCreoleConfig.Builder()
+                .setBoilerPlate(BOILERPLATE)
+                .setPrivileges(EnumSet.allOf(JCreolePrivilege.class))
+                .addCssHrefs(Arrays.asList("/site.css"));
+        builder.getHtmlExpander().put("siteName", "Site", false);
+        return builder;
+    }
+
+    @org.junit.Test
+    public void matchesSetters() throws IOException {
+        JCreole jCreole = new JCreole();
+        jCreole.setPrivileges(EnumSet.allOf(JCreolePrivilege.class));
+        String expected = jCreole.parseCreole(IOUtil.toStringBuilder(refFile));
+        JCreole session = new JCreole(newBuilder().build(), "$(pageContent)");
+        assertEquals(expected,
+                session.parseCreole(IOUtil.toStringBuilder(refFile)));
+    }
+
+    @org.junit.Test
+    public void sessionsIsolated() throws IOException {
+        JCreoleConfig.Builder builder = newBuilder();
+        JCreoleConfig config = builder.build();
+        // Builder changes after build() don't affect the config
+        builder.getHtmlExpander().put("siteName", "Changed", false);
+        builder.addCssHrefs(Arrays.asList("/changed.css"));
+
+        JCreole one = new JCreole(config, null);
+        one.getHtmlExpander().put("pageTitle", "One", false);
+        one.addCssHrefs(Arrays.asList("/one.css"));
+        JCreole two = new JCreole(config, null);
+        two.getHtmlExpander().put("pageTitle", "Two", false);
+        two.getHtmlExpander().put("siteName", "Other Site", false);
+
+        assertEquals("<title>Site: One</title>\n"
+                + "<link id=\"auto01\" class=\"auto\" rel=\"stylesheet\" "
+                + "type=\"text/css\" href=\"/site.css\" />\n"
+                + "<link id=\"auto02\" class=\"auto\" rel=\"stylesheet\" "
+                + "type=\"text/css\" href=\"/one.css\" />\n"
+                + "<p>x</p>\n",
+                one.postProcess(one.parseCreole(new StringBuilder("x")),
+                "\n"));
+        assertEquals("<title>Other Site: Two</title>\n"
+                + "<link id=\"auto01\" class=\"auto\" rel=\"stylesheet\" "
+                + "type=\"text/css\" href=\"/site.css\" />\n"
+                + "<p>y</p>\n",
+                two.postProcess(two.parseCreole(new StringBuilder("y")),
+                "\n"));
+        assertEquals(Arrays.asList("/site.css"), config.getCssHrefs());
+        assertEquals(EnumSet.allOf(JCreolePrivilege.class),
+                config.getPrivileges());
+    }
+
+    /**
+     * Each session gets its own copy of the config's privileges.
+     */
+    @org.junit.Test
+    public void privilegesIsolated() {
+        JCreoleConfig config = new JCreoleConfig.Builder()
+                .setPrivileges(EnumSet.noneOf(JCreolePrivilege.class))
+                .build();
+        JCreoleEngine engine = new JCreoleEngine(1);
+        JCreole one = engine.lease(config, null);
+        JCreole two = new JCreole(config, null);
+        one.getPrivileges().add(JCreolePrivilege.RAWHTML);
+        assertTrue(one.getPrivileges().contains(JCreolePrivilege.RAWHTML));
+        assertFalse(two.getPrivileges().contains(JCreolePrivilege.RAWHTML));
+        assertFalse(config.getPrivileges().contains(JCreolePrivilege.RAWHTML));
+        engine.release(one);
+        JCreole three = engine.lease(config, null);
+        assertFalse(
+                three.getPrivileges().contains(JCreolePrivilege.RAWHTML));
+    }
+
+    @org.junit.Test(expected=IllegalArgumentException.class)
+    public void badEnumSymbols() {
+        new JCreoleConfig.Builder().setEnumSymbols("abc", true);
+    }
+
+    @org.junit.Test
+    public void concurrentLeases() throws Exception {
+        final JCreoleConfig config = newBuilder().build();
+        JCreole reference = new JCreole(config, null);
+        reference.getHtmlExpander().put("pageTitle", "Ref", false);
+        final String expected = reference.postProcess(
+                reference.parseCreole(IOUtil.toStringBuilder(refFile)), "\n");
+        final JCreoleEngine engine = new JCreoleEngine(4);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        try {
+            for (int i = 0; i < 64; i++)
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws IOException {
+                        JCreole jCreole = engine.lease(config, null);
+                        try {
+                            jCreole.getHtmlExpander().put(
+                                    "pageTitle", "Ref", false);
+                            return jCreole.postProcess(jCreole.parseCreole(
+                                    IOUtil.toStringBuilder(refFile)), "\n");
+                        } finally {
+                            engine.release(jCreole);
+                        }
+                    }
+                }));
+            for (Future<String> result : results)
+                assertEquals(expected, result.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
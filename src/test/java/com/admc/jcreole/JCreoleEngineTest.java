@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.admc.util.IOUtil;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class JCreoleEngineTest {
+    private static final File refFile =
+            new File("src/main/resources/jcreole-ref.creole");
+
+    private static String render(JCreole jCreole) throws IOException {
+        jCreole.setPrivileges(EnumSet.allOf(JCreolePrivilege.class));
+        return jCreole.parseCreole(IOUtil.toStringBuilder(refFile));
+    }
+
+    @org.junit.Test
+    public void reusedJCreole() throws IOException {
+        String expected = render(new JCreole());
+        JCreole jCreole = new JCreole();
+        assertEquals(expected, render(jCreole));
+        jCreole.parseCreole(new StringBuilder("= Other\n<<toc>>\n"));
+        assertEquals(expected, render(jCreole));
+    }
+
+    @org.junit.Test
+    public void leases() throws IOException {
+        String expected = render(new JCreole());
+        JCreoleEngine engine = new JCreoleEngine(1);
+        JCreole jCreole = engine.lease();
+        assertEquals(expected, render(jCreole));
+        jCreole.addCssHrefs(Arrays.asList("/page.css"));
+        engine.release(jCreole);
+        assertNull(jCreole.cssHrefs);
+        assertEquals(1, engine.getIdleCount());
+        jCreole = engine.lease();
+        assertEquals(0, jCreole.getCssHrefs().size());
+        assertEquals(0, engine.getIdleCount());
+        // Privileges granted to the previous lessee are not retained
+        assertEquals(CreoleParser.DEFAULT_PLUGIN_PRIVILEGES,
+                jCreole.getPrivileges());
+        assertEquals(expected, render(jCreole));
+        JCreole other = engine.lease();
+        engine.release(other);
+        engine.release(jCreole);  // Discarded since pool is full
+        assertEquals(1, engine.getIdleCount());
+        try {
+            engine.release(jCreole);
+            fail("Released twice");
+        } catch (IllegalStateException ise) {
+            // Expected
+        }
+    }
+
+    @org.junit.Test
+    public void concurrent() throws Exception {
+        final String expected = render(new JCreole());
+        final JCreoleEngine engine = new JCreoleEngine(4);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        try {
+            for (int i = 0; i < 64; i++)
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws IOException {
+                        JCreole jCreole = engine.lease();
+                        try {
+                            return render(jCreole);
+                        } finally {
+                            engine.release(jCreole);
+                        }
+                    }
+                }));
+            for (Future<String> result : results)
+                assertEquals(expected, result.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(engine.getIdleCount() <= 4);
+    }
+}
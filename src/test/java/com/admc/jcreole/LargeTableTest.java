@@ -0,0 +1,59 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * A JUnit unit test.
+ * <p>
+ * Documents used to be limited to 0xFFFF markers.
+ * </p>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class LargeTableTest {
+    private static final int ROWS = 100000;
+    private static final int COLS = 5;
+
+    @org.junit.Test
+    public void halfMillionCells() throws IOException {
+        // The addClass directive keeps all tag markers from being skipped
+        StringBuilder creole = new StringBuilder("<<addClass =block big>>\n");
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < COLS; c++) creole.append('|').append(r);
+            creole.append("|\n");
+        }
+        JCreole jCreole = new JCreole();
+        jCreole.setPrivileges(EnumSet.allOf(JCreolePrivilege.class));
+        String html = jCreole.parseCreole(creole);
+        assertTrue(html.startsWith("<p class=\"big\"></p>\n<table"));
+        assertTrue(html.endsWith("<td>" + (ROWS - 1) + "</td> </tr>\n"
+                + "  </tbody>\n</table>\n"));
+        assertEquals(-1, html.indexOf(
+                com.admc.jcreole.marker.BufferMarker.markerChar));
+        int count = 0;
+        for (int i = html.indexOf("<td>"); i > -1;
+                i = html.indexOf("<td>", i + 4)) count++;
+        assertEquals(ROWS * COLS, count);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.admc.jcreole;
+
+import java.io.IOException;
+
+/**
+ * Times rendering of documents with increasing numbers of footnotes, to
+ * show that footnote entries are handled in linear time.
+ * <p>
+ * If entry handling is linear, the microseconds per footnote stay roughly
+ * constant as the footnote count doubles.
+ * Not a unit test.  Run with the test classpath:
+ * </p><pre>
+ *   java com.admc.jcreole.ManyFootNotesBenchmark [maxNotes]
+ * </pre>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class ManyFootNotesBenchmark {
+    private static final int RUNS = 3;
+
+    /**
+     * @return Shortest of RUNS render times, in nanoseconds
+     */
+    private static long renderNanos(int noteCount) throws IOException {
+        long min = Long.MAX_VALUE;
+        long start;
+        for (int i = 0; i < RUNS; i++) {
+            start = System.nanoTime();
+            ManyFootNotesTest.render(noteCount);
+            min = Math.min(min, System.nanoTime() - start);
+        }
+        return min;
+    }
+
+    public static void main(String[] sa) throws IOException {
+        int maxNotes = (sa.length > 0) ? Integer.parseInt(sa[0]) : 40000;
+        renderNanos(maxNotes / 8);  // Warm up
+        long nanos;
+        System.out.println("   notes      ms  us/note");
+        for (int notes = maxNotes / 16; notes <= maxNotes; notes *= 2) {
+            nanos = renderNanos(notes);
+            System.out.println(String.format("%8d %7d %8.2f", notes,
+                    nanos / 1000000, nanos / 1000.0 / notes));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * A JUnit unit test.
+ * <p>
+ * Footnote entries used to be deleted from the output buffer one at a time.
+ * Render times are compared by ManyFootNotesBenchmark.
+ * </p>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class ManyFootNotesTest {
+    private static final int NOTES = 20000;
+
+    /**
+     * References are made in reverse of definition order, so the default
+     * REF_ORDER reverses the entries.
+     */
+    static String render(int noteCount) throws IOException {
+        StringBuilder creole = new StringBuilder();
+        for (int i = noteCount - 1; i >= 0; i--)
+            creole.append("Ref<<footNote n").append(i).append(">> here.\n\n");
+        for (int i = 0; i < noteCount; i++)
+            creole.append("<<footNoteEntry n").append(i)
+                    .append(">> Note ").append(i).append(".\n\n");
+        creole.append("<<footNotes>>\n");
+        JCreole jCreole = new JCreole();
+        jCreole.setPrivileges(EnumSet.allOf(JCreolePrivilege.class));
+        return jCreole.parseCreole(creole);
+    }
+
+    @org.junit.Test
+    public void twentyThousandNotes() throws IOException {
+        String html = render(NOTES);
+        assertEquals(-1, html.indexOf(
+                com.admc.jcreole.marker.BufferMarker.markerChar));
+        assertEquals(-1, html.indexOf('\u0002'));
+        assertEquals(-1, html.indexOf('\u0003'));
+        int count = 0;
+        for (int i = html.indexOf("<dl id=\"jcfn"); i > -1;
+                i = html.indexOf("<dl id=\"jcfn", i + 4)) count++;
+        assertEquals(NOTES, count);
+        assertTrue(html.startsWith("<p>Ref<a class=\"jcreole_fnref\" "
+                + "href=\"#jcfn" + NOTES
+                + "\"><sup>1</sup></a> here.</p>\n"));
+        assertTrue(html.contains("<div class=\"jcx_footnotes\">\n"
+                + "<dl id=\"jcfn" + NOTES + "\">\n  <dt>1</td>\n"
+                + "  <dd><p> Note " + (NOTES - 1) + ".</p></dd>\n</dl>\n"));
+        assertTrue(html.contains("<dl id=\"jcfn1\">\n  <dt>" + NOTES
+                + "</td>\n  <dd><p> Note 0.</p></dd>\n</dl>\n\n</div>"));
+    }
+}
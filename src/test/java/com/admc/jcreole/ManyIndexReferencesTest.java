@@ -0,0 +1,60 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class ManyIndexReferencesTest {
+    private static final int NAMES = 10000;
+    private static final int REFS_PER_NAME = 3;
+
+    @org.junit.Test
+    public void thirtyThousandRefs() throws IOException {
+        StringBuilder creole = new StringBuilder();
+        for (int r = 0; r < REFS_PER_NAME; r++)
+            for (int i = 0; i < NAMES; i++)
+                creole.append("t<<indexed n").append(i).append(">>\n");
+        creole.append("\n<<index /REF_ORDER>>\n");
+        JCreole jCreole = new JCreole();
+        jCreole.setPrivileges(EnumSet.allOf(JCreolePrivilege.class));
+        String html = jCreole.parseCreole(creole);
+        int count = 0;
+        for (int i = html.indexOf("<dl>"); i > -1;
+                i = html.indexOf("<dl>", i + 4)) count++;
+        assertEquals(NAMES, count);
+        assertTrue(html.contains("<div class=\"jcx_index\">\n<dl>\n"
+                + "  <dt>n0</td>\n  <dd><a href=\"#jcindexed1\">1</a> "
+                + "<a href=\"#jcindexed" + (NAMES + 1) + "\">2</a> "
+                + "<a href=\"#jcindexed" + (2 * NAMES + 1)
+                + "\">3</a></dd>\n</dl>\n"));
+        assertTrue(html.contains("<dt>n" + (NAMES - 1) + "</td>\n  <dd>"
+                + "<a href=\"#jcindexed" + NAMES + "\">1</a> "
+                + "<a href=\"#jcindexed" + (2 * NAMES) + "\">2</a> "
+                + "<a href=\"#jcindexed" + (3 * NAMES)
+                + "\">3</a></dd>\n</dl>\n\n</div>"));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * Times rendering of documents with deeply nested JCX blocks, to show
+ * that output is not re-copied at each nesting level.
+ * <p>
+ * If nested output is copied only once, the nanoseconds per output
+ * character stay roughly constant as the nesting depth doubles.
+ * Not a unit test.  Run with the test classpath:
+ * </p><pre>
+ *   java com.admc.jcreole.NestedOutputBenchmark [maxDepth]
+ * </pre>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class NestedOutputBenchmark {
+    private static final String LEVEL_TEXT = "Some text at this level, long "
+            + "enough that copying it once per nesting level would show.\n";
+    private static final int RUNS = 5;
+
+    private static StringBuilder nestedDoc(int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            sb.append("<<[>>\n").append(LEVEL_TEXT);
+        for (int i = 0; i < depth; i++) sb.append("<<]>>\n");
+        return sb;
+    }
+
+    private static JCreole newJCreole() {
+        JCreole jCreole = new JCreole();
+        jCreole.setPrivileges(EnumSet.allOf(JCreolePrivilege.class));
+        return jCreole;
+    }
+
+    /**
+     * @return Shortest of RUNS render times, in nanoseconds
+     */
+    private static long renderNanos(StringBuilder doc) throws IOException {
+        long min = Long.MAX_VALUE;
+        long start;
+        for (int i = 0; i < RUNS; i++) {
+            // A JCreole instance parses only one document
+            JCreole jCreole = newJCreole();
+            start = System.nanoTime();
+            jCreole.parseCreole(new StringBuilder(doc));
+            min = Math.min(min, System.nanoTime() - start);
+        }
+        return min;
+    }
+
+    public static void main(String[] sa) throws IOException {
+        int maxDepth = (sa.length > 0) ? Integer.parseInt(sa[0]) : 4000;
+        renderNanos(nestedDoc(maxDepth / 8));  // Warm up
+        String html;
+        long nanos;
+        System.out.println("   depth      ms  out chars  ns/char");
+        for (int depth = maxDepth / 16; depth <= maxDepth; depth *= 2) {
+            StringBuilder doc = nestedDoc(depth);
+            html = newJCreole().parseCreole(new StringBuilder(doc));
+            nanos = renderNanos(doc);
+            System.out.println(String.format("%8d %7d %10d %8.1f", depth,
+                    nanos / 1000000, html.length(),
+                    nanos / (double) html.length()));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class PageCacheTest {
+    private File dir = new File("build/test-results/pagecache");
+    private File input = new File(dir, "page.creole");
+    private File absent = new File(dir, "boilerplate.html");
+
+    public PageCacheTest() throws IOException {
+        dir.mkdirs();
+        FileUtils.writeStringToFile(input, "text", "UTF-8");
+        absent.delete();
+    }
+
+    private PageCache.Inputs inputs() {
+        PageCache.Inputs inputs = new PageCache.Inputs();
+        inputs.add(input);
+        inputs.add(absent);
+        return inputs;
+    }
+
+    private static String page(char c, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) sb.append(c);
+        return sb.toString();
+    }
+
+    @org.junit.Test
+    public void hits() {
+        PageCache cache = new PageCache(100);
+        assertNull(cache.get("/a.html"));
+        cache.put("/a.html", "alpha", inputs());
+        assertEquals("alpha", cache.get("/a.html"));
+        assertEquals("alpha", cache.get("/a.html"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(5, cache.getChars());
+    }
+
+    @org.junit.Test
+    public void leastRecentlyUsedEvicted() {
+        PageCache cache = new PageCache(100);
+        cache.put("/a.html", page('a', 40), inputs());
+        cache.put("/b.html", page('b', 40), inputs());
+        cache.get("/a.html");
+        cache.put("/c.html", page('c', 40), inputs());
+        assertNull(cache.get("/b.html"));
+        assertNotNull(cache.get("/a.html"));
+        assertNotNull(cache.get("/c.html"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(80, cache.getChars());
+        cache.put("/a.html", page('a', 10), inputs());
+        assertEquals(50, cache.getChars());
+        cache.put("/d.html", page('d', 101), inputs());
+        assertNull(cache.get("/d.html"));
+        assertEquals(2, cache.size());
+    }
+
+    @org.junit.Test
+    public void modifiedInputInvalidates() throws IOException {
+        PageCache cache = new PageCache(100);
+        cache.put("/a.html", "alpha", inputs());
+        assertTrue(input.setLastModified(input.lastModified() - 10000));
+        assertNull(cache.get("/a.html"));
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(0, cache.size());
+    }
+
+    @org.junit.Test
+    public void createdInputInvalidates() throws IOException {
+        PageCache cache = new PageCache(100);
+        cache.put("/a.html", "alpha", inputs());
+        FileUtils.writeStringToFile(absent, "<html/>", "UTF-8");
+        try {
+            assertNull(cache.get("/a.html"));
+        } finally {
+            absent.delete();
+        }
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @org.junit.Test
+    public void disabled() {
+        PageCache cache = new PageCache(0);
+        assertFalse(cache.isEnabled());
+        cache.put("/a.html", "alpha", inputs());
+        assertNull(cache.get("/a.html"));
+    }
+
+    @org.junit.Test
+    public void volatileNotCached() {
+        PageCache cache = new PageCache(100);
+        PageCache.Inputs inputs = inputs();
+        inputs.setVolatile();
+        cache.put("/a.html", "alpha", inputs);
+        assertNull(cache.get("/a.html"));
+        assertEquals(0, cache.size());
+    }
+
+    @org.junit.Test
+    public void pageWriter() throws IOException {
+        PageCache cache = new PageCache(10);
+        StringWriter out = new StringWriter();
+        PageCache.PageWriter writer = cache.newPageWriter(out, inputs());
+        writer.write("alpha");
+        writer.write('-');
+        assertEquals("alpha-", writer.getPage());
+        writer.write("beta gamma");
+        assertEquals("alpha-beta gamma", out.toString());
+        assertNull("Longer than the cache", writer.getPage());
+
+        PageCache.Inputs inputs = inputs();
+        writer = cache.newPageWriter(new StringWriter(), inputs);
+        writer.write("alpha");
+        inputs.setVolatile();
+        writer.write("beta");
+        assertNull(writer.getPage());
+
+        assertNull(new PageCache(0).newPageWriter(out, inputs()));
+    }
+}
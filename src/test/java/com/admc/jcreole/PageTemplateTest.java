@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.StringWriter;
+import com.admc.util.Expander;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class PageTemplateTest {
+    private static final String BOILERPLATE = "<html>\n<head>\n"
+            + "<title>${siteName}: ${-pageTitle}</title>\n$(pageHeaders)"
+            + "</head>\n<body>\n$(banner) $(-noBanner) $(unmapped) "
+            + "\\$(escaped) \\${escaped} ${unmapped}\n"
+            + "$(!pageContent)\n</body>\n</html>\n";
+    private static final String CONTENT =
+            "<p>Hello ${user} \\${x} $(banner)\n</p>\n";
+
+    private Expander framingExpander =
+            new Expander(Expander.PairedDelims.ROUNDED);
+    private Expander htmlExpander = new Expander(Expander.PairedDelims.CURLY);
+
+    public PageTemplateTest() {
+        framingExpander.put("banner", "<div>\n${siteName}</div>", false);
+        htmlExpander.put("siteName", "Site", false);
+        htmlExpander.put("user", "multi\nline", false);
+    }
+
+    /**
+     * The implementation which PageTemplate replaced
+     */
+    private String legacyRender(String headers, String eol) {
+        framingExpander.put("pageHeaders", headers, false);
+        framingExpander.put("pageContent", CONTENT, false);
+        String html = framingExpander.expandToString(BOILERPLATE);
+        if (eol != null) html = html.replace("\n", eol);
+        return htmlExpander.expandToString(html);
+    }
+
+    private String render(String headers, String eol) throws IOException {
+        StringWriter writer = new StringWriter();
+        new PageTemplate(BOILERPLATE).render(writer, eol, headers, CONTENT,
+                framingExpander, htmlExpander);
+        return writer.toString();
+    }
+
+    @org.junit.Test
+    public void matchesLegacy() throws IOException {
+        assertEquals(legacyRender("<link />\n", null),
+                render("<link />\n", null));
+    }
+
+    @org.junit.Test
+    public void eols() throws IOException {
+        String expected = legacyRender("<link />\n", "\r\n");
+        assertTrue(expected.contains("multi\nline"));
+        assertTrue(expected.contains("<div>\r\nSite</div>"));
+        assertEquals(expected, render("<link />\n", "\r\n"));
+    }
+
+    @org.junit.Test
+    public void pageHeaders() {
+        assertTrue(new PageTemplate(BOILERPLATE).hasPageHeaders());
+        assertFalse(new PageTemplate(
+                "$(-pageHeaders)$(pageContent)").hasPageHeaders());
+    }
+
+    @org.junit.Test
+    public void unsatisfiedBeforeOutput() throws IOException {
+        StringWriter writer = new StringWriter();
+        try {
+            new PageTemplate("<p>${!nothing}</p>$(pageContent)").render(
+                    writer, null, null, CONTENT,
+                    framingExpander, htmlExpander);
+            fail("Unsatisfied reference not detected");
+        } catch (IllegalArgumentException iae) {
+            assertEquals(0, writer.getBuffer().length());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.admc.jcreole;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Times parsing of the pathological-input corpus used by
+ * PathologicalInputTest, at a base size and at SCALE times that size.
+ * <p>
+ * If the scanner rescanned the remainder of the input for each repetition,
+ * the time ratio would approach SCALE * SCALE rather than SCALE.
+ * Not a unit test.  Run from the project directory with the test
+ * classpath:
+ * </p><pre>
+ *   java com.admc.jcreole.PathologicalInputBenchmark [baseRepeats]
+ * </pre>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class PathologicalInputBenchmark {
+    private static final int SCALE = 8;
+    private static final int RUNS = 3;
+
+    /**
+     * @return Shortest of RUNS parse times, in nanoseconds
+     */
+    private static long parseNanos(String unit, int repeats)
+            throws IOException {
+        StringBuilder sb = PathologicalInputTest.repeat(unit, repeats);
+        long min = Long.MAX_VALUE;
+        long start;
+        CreoleScanner scanner;
+        for (int i = 0; i < RUNS; i++) {
+            scanner = CreoleScanner.newCreoleScanner(sb, false, null);
+            start = System.nanoTime();
+            try {
+                new CreoleParser().parse(scanner);
+            } catch (Exception e) {
+                // Many of the units are invalid Creole
+            }
+            min = Math.min(min, System.nanoTime() - start);
+        }
+        return min;
+    }
+
+    public static void main(String[] sa) throws IOException {
+        int baseRepeats = (sa.length > 0) ? Integer.parseInt(sa[0]) : 1000;
+        String unit;
+        long baseNanos, scaledNanos;
+        System.out.println(String.format("%-28s %8s %8s %6s", "unit",
+                "base ms", "x" + SCALE + " ms", "ratio"));
+        for (File f : PathologicalInputTest.corpusFiles()) {
+            unit = FileUtils.readFileToString(f, "UTF-8");
+            parseNanos(unit, baseRepeats);  // Warm up
+            baseNanos = parseNanos(unit, baseRepeats);
+            scaledNanos = parseNanos(unit, SCALE * baseRepeats);
+            System.out.println(String.format("%-28s %8.1f %8.1f %6.1f",
+                    f.getName(), baseNanos / 1000000.0,
+                    scaledNanos / 1000000.0,
+                    scaledNanos / (double) Math.max(1L, baseNanos)));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.ArrayList;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import static org.junit.Assert.*;
+import org.apache.commons.io.FileUtils;
+
+@RunWith(value = Parameterized.class)
+/**
+ * Verifies that input consisting of many repetitions of a unit which might
+ * otherwise make the scanner rescan the remainder of the input for each
+ * repetition is still rendered in full.
+ * <p>
+ * Each *.creole file in the corpus directory holds one unit.
+ * Parse failures are expected for some units, and must then be reported
+ * the same way regardless of the repetition count.
+ * Parse times are compared by PathologicalInputBenchmark.
+ * </p>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class PathologicalInputTest {
+    static File corpusRoot = new File("src/test/data/pathological");
+    private static final int BASE_REPEATS = 1000;
+
+    private File unitFile;
+
+    public PathologicalInputTest(File unitFile) {
+        this.unitFile = unitFile;
+    }
+
+    @Parameters
+    public static List<Object[]> unitFiles() {
+        List<Object[]> params = new ArrayList<Object[]>();
+        for (File f : corpusFiles()) params.add(new Object[] { f });
+        return params;
+    }
+
+    static Collection<File> corpusFiles() {
+        if (!corpusRoot.isDirectory())
+            throw new IllegalStateException(
+                    "Dir missing: " + corpusRoot.getAbsolutePath());
+        return FileUtils.listFiles(
+                corpusRoot, new String[] { "creole" }, false);
+    }
+
+    static StringBuilder repeat(String unit, int repeats) {
+        StringBuilder sb = new StringBuilder(unit.length() * repeats);
+        for (int i = 0; i < repeats; i++) sb.append(unit);
+        return sb;
+    }
+
+    /**
+     * @return the rendered HTML, or the parse failure message
+     */
+    private static String render(String unit, int repeats)
+            throws IOException {
+        try {
+            return new JCreole().parseCreole(repeat(unit, repeats));
+        } catch (CreoleParseException cpe) {
+            return cpe.getMessage();
+        }
+    }
+
+    /**
+     * Each additional BASE_REPEATS repetitions must add the same amount of
+     * output, so no part of the input is dropped, and failures must not
+     * depend upon the input size.
+     */
+    @org.junit.Test
+    public void outputGrowsWithInput() throws IOException {
+        String unit = FileUtils.readFileToString(unitFile, "UTF-8");
+        String out1 = render(unit, BASE_REPEATS);
+        String out2 = render(unit, 2 * BASE_REPEATS);
+        String out3 = render(unit, 3 * BASE_REPEATS);
+        assertFalse(out1.indexOf(
+                com.admc.jcreole.marker.BufferMarker.markerChar) > -1);
+        if (out1.startsWith("<")) {
+            assertTrue(unitFile.getName(), out2.length() > out1.length());
+            assertEquals(unitFile.getName(), out2.length() - out1.length(),
+                    out3.length() - out2.length());
+        } else {
+            assertEquals(unitFile.getName(), out1, out2);
+            assertEquals(unitFile.getName(), out1, out3);
+        }
+    }
+}
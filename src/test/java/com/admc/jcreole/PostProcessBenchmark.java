@@ -0,0 +1,150 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.admc.jcreole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.EnumSet;
+import com.admc.util.Expander;
+import com.admc.util.IOUtil;
+
+/**
+ * Measures the bytes allocated and the time taken to post-process the
+ * bundled reference and user guide pages, comparing the three-pass
+ * post-processing which the compiled PageTemplate replaced (framing
+ * expansion, EOL replacement, then HTML expansion, each making a full copy
+ * of the page) with the single pass of postProcess().
+ * <p>
+ * Allocation is read from the HotSpot ThreadMXBean.
+ * Not a unit test.  Run from the project directory with the test
+ * classpath:
+ * </p><pre>
+ *   java com.admc.jcreole.PostProcessBenchmark [iterations]
+ * </pre>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class PostProcessBenchmark {
+    private static final String EOL = "\r\n";
+    private static final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+
+    private interface Variant {
+        void run(JCreole jCreole, String htmlFrag) throws IOException;
+    }
+
+    /**
+     * Discards all output
+     */
+    private static class NullWriter extends Writer {
+        public void write(int c) { }
+        public void write(char[] cbuf, int off, int len) { }
+        public void write(String str, int off, int len) { }
+        public void flush() { }
+        public void close() { }
+    }
+
+    private static String boilerPlate;
+
+    private static final Variant THREE_PASS = new Variant() {
+        public void run(JCreole jCreole, String htmlFrag) {
+            Expander framingExpander =
+                    new Expander(jCreole.getFramingExpander());
+            framingExpander.put("pageHeaders", "", false);
+            framingExpander.put("pageContent", htmlFrag, false);
+            String page = framingExpander.expand(boilerPlate).toString();
+            page = page.replace("\n", EOL);
+            jCreole.getHtmlExpander().expandToString(page);
+        }
+    };
+
+    private static final Variant TO_STRING = new Variant() {
+        public void run(JCreole jCreole, String htmlFrag)
+                throws IOException {
+            jCreole.postProcess(htmlFrag, EOL);
+        }
+    };
+
+    private static final Variant TO_WRITER = new Variant() {
+        private Writer nullWriter = new NullWriter();
+        public void run(JCreole jCreole, String htmlFrag)
+                throws IOException {
+            jCreole.postProcess(htmlFrag, EOL, nullWriter);
+        }
+    };
+
+    /**
+     * Prints bytes allocated and microseconds per page for the variant.
+     */
+    private static void measure(String label, Variant variant,
+            JCreole jCreole, String htmlFrag, int iterations)
+            throws IOException {
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < iterations; i++)
+            variant.run(jCreole, htmlFrag);  // Warm up
+        long bytes = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) variant.run(jCreole, htmlFrag);
+        long nanos = System.nanoTime() - start;
+        bytes = threadBean.getThreadAllocatedBytes(threadId) - bytes;
+        System.out.println(String.format("  %-26s %12d %10.1f", label,
+                bytes / iterations, nanos / 1000.0 / iterations));
+    }
+
+    public static void main(String[] sa) throws IOException {
+        int iterations = (sa.length > 0) ? Integer.parseInt(sa[0]) : 1000;
+        // Satisfy the build-time references, like the build does
+        Expander buildExpander = new Expander(Expander.PairedDelims.CURLY);
+        buildExpander.put("ver", "jcreole", "1.4.0", false);
+        buildExpander.put("buildInc", "siteCss",
+                IOUtil.toString(new File("src/main/webapp/site.css")), false);
+        buildExpander.put("buildInc", "jcreoleCss",
+                IOUtil.toString(new File("src/main/webapp/jcreole.css")),
+                false);
+        String rawBoilerPlate = buildExpander.expandToString(IOUtil.toString(
+                new File("src/main/resources/boilerplate-standalone.html")));
+        boilerPlate = JCreole.toBoilerPlate(rawBoilerPlate);
+        String[] paths = {
+            "src/main/resources/jcreole-ref.creole", "doc/using.creole"
+        };
+        JCreole jCreole;
+        String htmlFrag;
+        for (String path : paths) {
+            jCreole = new JCreole(rawBoilerPlate);
+            jCreole.setPrivileges(EnumSet.allOf(JCreolePrivilege.class));
+            jCreole.getHtmlExpander().put("pageTitle", path, false);
+            jCreole.getHtmlExpander().put("isoDateTime", "2011-01-01", false);
+            htmlFrag = jCreole.parseCreole(IOUtil.toStringBuilder(
+                    new File(path)));
+            System.out.println(String.format(
+                    "%s (%d chars of HTML)%n  %-26s %12s %10s", path,
+                    jCreole.postProcess(htmlFrag, EOL).length(),
+                    "", "bytes/page", "us/page"));
+            measure("three passes", THREE_PASS, jCreole, htmlFrag,
+                    iterations);
+            measure("postProcess to String", TO_STRING, jCreole, htmlFrag,
+                    iterations);
+            measure("postProcess to Writer", TO_WRITER, jCreole, htmlFrag,
+                    iterations);
+        }
+    }
+}
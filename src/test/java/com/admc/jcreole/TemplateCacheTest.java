@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+import java.io.File;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class TemplateCacheTest {
+    private static final String BOILERPLATE =
+            "<html><body>$(pageContent)</body></html>";
+    private File bpFile = new File("/site/boilerplate.html");
+
+    @org.junit.Test
+    public void reusedUntilModified() {
+        TemplateCache cache = new TemplateCache();
+        assertNull(cache.get(bpFile, 1000L));
+        PageTemplate pageTemplate = cache.put(bpFile, 1000L, BOILERPLATE);
+        assertSame(pageTemplate, cache.get(bpFile, 1000L));
+        assertNull(cache.get(new File("/boilerplate.html"), 1000L));
+        assertNull(cache.get(bpFile, 2000L));
+        PageTemplate newTemplate = cache.put(bpFile, 2000L, BOILERPLATE);
+        assertNotSame(pageTemplate, newTemplate);
+        assertSame(newTemplate, cache.get(bpFile, 2000L));
+        assertEquals(1, cache.size());
+    }
+
+    @org.junit.Test
+    public void leastRecentlyUsedEvicted() {
+        TemplateCache cache = new TemplateCache(2);
+        File a = new File("/a/boilerplate.html");
+        File b = new File("/b/boilerplate.html");
+        cache.put(a, 1L, BOILERPLATE);
+        cache.put(b, 1L, BOILERPLATE);
+        assertNotNull(cache.get(a, 1L));
+        cache.put(bpFile, 1L, BOILERPLATE);
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(a, 1L));
+        assertNull(cache.get(b, 1L));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.jcreole;
+
+import static org.junit.Assert.*;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class WashedSymbolTest {
+    private static final String LONG_STRING =
+            "0123456789012345678901234567890123456789"
+            + "0123456789012345678901234567890123456789";
+
+    private static WashedSymbol nested() {
+        return new WashedSymbol("1#a").append(new WashedSymbol("bc"))
+                .append(LONG_STRING).append(new WashedSymbol())
+                .append(new WashedSymbol("d").append(new WashedSymbol("e\n")));
+    }
+
+    @org.junit.Test
+    public void flatten() {
+        WashedSymbol ws = nested();
+        String expected = "1#abc" + LONG_STRING + "de\n";
+        assertEquals(expected, ws.toString());
+        assertEquals(expected.length(), ws.length());
+        for (int i = 0; i < expected.length(); i++)
+            assertEquals(expected.charAt(i), ws.charAt(i));
+        assertEquals('\n', ws.lastChar());
+        assertEquals(-1, new WashedSymbol().lastChar());
+    }
+
+    @org.junit.Test
+    public void deletes() {
+        WashedSymbol ws = nested();
+        ws.deleteFirstChars(2);
+        ws.deleteLastChar();
+        assertEquals("abc" + LONG_STRING + "de", ws.toString());
+        ws.deleteFirstChars(4);
+        ws.deleteLastChar();
+        ws.deleteLastChar();
+        assertEquals(LONG_STRING.substring(1), ws.toString());
+        assertEquals(LONG_STRING.length() - 1, ws.length());
+        assertEquals('9', ws.lastChar());
+    }
+
+    @org.junit.Test
+    public void entry() {
+        EntrySymbol es = new EntrySymbol(EntryType.FOOTNOTE, "name");
+        es.setCleanString("<p>x</p>");
+        WashedSymbol ws = new WashedSymbol("a").append(es).append('b');
+        assertEquals("a\u0002Fname\n<p>x</p>\u0003b", ws.toString());
+        assertEquals(ws.toString().length(), ws.length());
+        try {
+            es.setCleanString("y");
+            fail("Content replaced");
+        } catch (IllegalStateException ise) {
+            // Expected
+        }
+    }
+}
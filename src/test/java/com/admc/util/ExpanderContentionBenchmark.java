@@ -0,0 +1,111 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.util;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures expansion throughput of one Expander shared by many threads,
+ * with expand() calls serialized on the Expander's monitor as they used to
+ * be, and lock-free as they are now.
+ * <p>
+ * Not a unit test.  Run with the test classpath:
+ * </p><pre>
+ *   java com.admc.util.ExpanderContentionBenchmark [threads [millis]]
+ * </pre>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class ExpanderContentionBenchmark {
+    private static final String TEXT = "<p>Welcome to ${siteName}.  See "
+            + "<a href=\"${baseUrl}/help\">help</a>, or ${-missing}mail "
+            + "${adminEmail} with \\${literal} questions.</p>\n";
+
+    private static Expander newExpander() {
+        Expander expander = new Expander(Expander.PairedDelims.CURLY);
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < 200; i++) map.put("key" + i, "value" + i);
+        map.put("siteName", "Example Site");
+        map.put("baseUrl", "http://example.com");
+        map.put("adminEmail", "admin@example.com");
+        expander.putAll(map, false);
+        return expander;
+    }
+
+    /**
+     * @return expansions per second by all threads together
+     */
+    private static double run(final Expander expander, final boolean locked,
+            int threadCount, final long millis) throws InterruptedException {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final AtomicLong total = new AtomicLong();
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    long count = 0;
+                    int sink = 0;
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                    long end = System.currentTimeMillis() + millis;
+                    while (System.currentTimeMillis() < end) {
+                        for (int j = 0; j < 100; j++) {
+                            if (locked) {
+                                synchronized (expander) {
+                                    sink += expander.expand(TEXT).length();
+                                }
+                            } else {
+                                sink += expander.expand(TEXT).length();
+                            }
+                        }
+                        count += 100;
+                    }
+                    if (sink == 42) System.out.print("");
+                    total.addAndGet(count);
+                }
+            };
+            threads[i].start();
+        }
+        startLatch.countDown();
+        for (Thread thread : threads) thread.join();
+        return total.get() * 1000.0 / millis;
+    }
+
+    public static void main(String[] sa) throws InterruptedException {
+        int threadCount = (sa.length > 0) ? Integer.parseInt(sa[0]) : 32;
+        long millis = (sa.length > 1) ? Long.parseLong(sa[1]) : 2000;
+        Expander expander = newExpander();
+        run(expander, true, threadCount, millis / 2);  // Warm up
+        run(expander, false, threadCount, millis / 2);
+        System.out.println(threadCount + " threads, available processors: "
+                + Runtime.getRuntime().availableProcessors());
+        System.out.println("        expansions/s");
+        System.out.println(String.format("locked    %10.0f",
+                run(expander, true, threadCount, millis)));
+        System.out.println(String.format("lock-free %10.0f",
+                run(expander, false, threadCount, millis)));
+    }
+}
@@ -20,6 +20,14 @@ package com.admc.util;
 import static org.junit.Assert.*;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * A JUnit unit test.
@@ -40,6 +48,63 @@ public class ExpanderTest {
         return newMap;
     }
 
+    /**
+     * The regex implementation which the one-pass expansion replaced,
+     * for a single map
+     */
+    static String legacyExpand(Expander.PairedDelims pairedDelims,
+            Map<String, String> map, String inString) {
+        char l = pairedDelims.lChar, r = pairedDelims.rChar;
+        Pattern refPattern = Pattern.compile("\\$\\" + l + "([-!])?([^\\"
+                + r + "\\" + l + "]+)\\" + r);
+        String escapeFrom = "\\$" + l;
+        String escapeTo = "$" + l;
+        Set<String> throwRefs = new HashSet<String>();
+        String seq = inString.replace(escapeFrom, "\u0002");
+        Matcher matcher = refPattern.matcher(seq);
+        int prevEnd = 0;
+        StringBuilder sb = new StringBuilder();
+        while (matcher.find()) {
+            if (throwRefs.size() < 1)
+                sb.append(seq.subSequence(prevEnd, matcher.start()));
+            prevEnd = matcher.end();
+            if (map.containsKey(matcher.group(2))) {
+                if (throwRefs.size() < 1)
+                    sb.append(map.get(matcher.group(2)));
+                continue;
+            }
+            if (matcher.group(1) == null) {
+                if (throwRefs.size() < 1) sb.append(matcher.group(0));
+                continue;
+            }
+            if (matcher.group(1).charAt(0) == '!')
+                throwRefs.add(matcher.group(2));
+        }
+        if (throwRefs.size() > 0)
+            throw new IllegalArgumentException(
+                    "Unsatisfied ! reference(s): " + throwRefs.size());
+        sb.append(seq.substring(prevEnd));
+        return sb.toString().replace("\u0002", escapeTo);
+    }
+
+    @SuppressWarnings("deprecation")
+    @org.junit.Test
+    public void deprecatedDelimHelpers() {
+        for (Expander.PairedDelims pd : Expander.PairedDelims.values()) {
+            String ref = "$" + pd.lChar + "!a.b" + pd.rChar;
+            Matcher matcher = pd.refPattern.matcher("x" + ref + "y");
+            assertTrue(matcher.find());
+            assertEquals(ref, matcher.group(0));
+            assertEquals("!", matcher.group(1));
+            assertEquals("a.b", matcher.group(2));
+            StringBuilder sb = new StringBuilder("\\$" + pd.lChar + "x");
+            pd.preserveEscapes(sb);
+            assertEquals("\u0002x", sb.toString());
+            pd.escape(sb);
+            assertEquals("$" + pd.lChar + "x", sb.toString());
+        }
+    }
+
     @org.junit.Test
     public void noExpands() {
         expander.putAll(toMap("alpha", "one", "beta", "two"));
@@ -81,4 +146,191 @@ public class ExpanderTest {
         assertEquals("preeins zweipost",
                 expander.expandToString("pre${!sys|alpha.beta}post"));
     }
+
+    @org.junit.Test
+    public void parent() {
+        expander.putAll(toMap("alpha", "one", "beta", "two"));
+        Expander child = new Expander(expander);
+        child.put("beta", "zwei");
+        child.put("gamma", "${alpha} drei");
+        assertEquals("one zwei one drei",
+                child.expandToString("${alpha} ${beta} ${gamma}"));
+        assertEquals("one two ${gamma}",
+                expander.expandToString("${alpha} ${beta} ${gamma}"));
+    }
+
+    @org.junit.Test
+    public void copy() {
+        expander.putAll(toMap("alpha", "one"));
+        Expander copy = expander.copy();
+        expander.put("alpha", "eins");
+        copy.put("beta", "two");
+        assertEquals("one two", copy.expandToString("${alpha} ${beta}"));
+        assertEquals("eins ${beta}",
+                expander.expandToString("${alpha} ${beta}"));
+    }
+
+    @org.junit.Test
+    public void suppliers() {
+        final int[] calls = new int[1];
+        expander.put("alpha", "one");
+        expander.putSupplier("beta", new Expander.ValueSupplier() {
+            public String get() {
+                calls[0]++;
+                return "two";
+            }
+        });
+        expander.putSupplier("gamma", new Expander.ValueSupplier() {
+            public String get() { return null; }
+        });
+        Expander child = new Expander(expander);
+        assertEquals("one ${gamma}", child.expandToString("${alpha} ${gamma}"));
+        assertEquals(0, calls[0]);
+        assertEquals("two one two", child.expandToString(
+                "${beta} ${alpha} ${!beta}"));
+        assertEquals(1, calls[0]);
+        // Memoized only for the call, or for calls given the same Memos
+        assertEquals("two", child.get("beta"));
+        assertEquals(2, calls[0]);
+        Expander.Memos memos = new Expander.Memos();
+        assertEquals("two", child.get("beta", memos));
+        assertEquals("two", child.get("beta", memos));
+        assertEquals(3, calls[0]);
+        child.put("beta", "zwei");
+        assertEquals("zwei", child.expandToString("${beta}"));
+        assertEquals(3, calls[0]);
+        expander.putSupplier("beta", new Expander.ValueSupplier() {
+            public String get() { return "deux"; }
+        });
+        assertEquals("deux", expander.expandToString("${beta}"));
+    }
+
+    @org.junit.Test
+    public void resolvers() {
+        final List<String> names = new ArrayList<String>();
+        expander.putResolver("sys", new Expander.NamespaceResolver() {
+            public String resolve(String name) {
+                names.add(name);
+                return System.getProperty(name);
+            }
+        });
+        System.setProperty("alpha.gamma", "drei");
+        expander.put("sys", "x.y", "set", false);
+        assertEquals("drei drei set ${sys|unset.prop} ${x|alpha.gamma}",
+                expander.expandToString("${sys|alpha.gamma} ${sys|alpha.gamma}"
+                + " ${sys|x.y} ${sys|unset.prop} ${x|alpha.gamma}"));
+        assertEquals(Arrays.asList("alpha.gamma", "unset.prop"), names);
+    }
+
+    @org.junit.Test
+    public void selfReferringSupplier() {
+        expander.putSupplier("alpha", new Expander.ValueSupplier() {
+            public String get() {
+                return "<" + expander.expandToString("${alpha}") + ">";
+            }
+        });
+        assertEquals("<${alpha}>", expander.expandToString("${alpha}"));
+    }
+
+    /**
+     * A supplier in progress on one thread does not leave the reference
+     * unsatisfied for another.
+     */
+    @org.junit.Test
+    public void concurrentSupplier() throws InterruptedException {
+        expander.putSupplier("slow", new Expander.ValueSupplier() {
+            public String get() {
+                Thread.yield();
+                return "done";
+            }
+        });
+        final String[] failure = new String[1];
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 2000; j++)
+                            expander.expandToString("${!slow}");
+                    } catch (IllegalArgumentException iae) {
+                        failure[0] = iae.getMessage();
+                    }
+                }
+            };
+            readers[i].start();
+        }
+        for (Thread reader : readers) reader.join();
+        assertNull(failure[0], failure[0]);
+    }
+
+    /**
+     * Each putAll is published atomically, so expansions never see some
+     * mappings of a putAll without the others.
+     */
+    @org.junit.Test
+    public void snapshots() throws InterruptedException {
+        expander.putAll(toMap("alpha", "0", "beta", "0"));
+        final String[] failure = new String[1];
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread() {
+                public void run() {
+                    String s;
+                    for (int j = 0; j < 20000; j++) {
+                        s = expander.expandToString("${alpha}/${beta}");
+                        if (!s.substring(0, s.indexOf('/'))
+                                .equals(s.substring(s.indexOf('/') + 1)))
+                            failure[0] = s;
+                    }
+                }
+            };
+            readers[i].start();
+        }
+        for (int i = 1; i < 2000; i++) {
+            String val = Integer.toString(i);
+            expander.putAll(toMap("alpha", val, "beta", val));
+        }
+        for (Thread reader : readers) reader.join();
+        assertNull(failure[0]);
+    }
+
+    @org.junit.Test
+    public void escapes() {
+        expander.putAll(toMap("alpha", "one"));
+        assertEquals("${alpha} one $${alpha} \\${alpha} ${alpha",
+                expander.expandToString(
+                "\\${alpha} ${alpha} $\\${alpha} \\\\${alpha} ${alpha"));
+        assertEquals("${a${b} ${-} x", expander.expandToString(
+                "${a\\${b} ${-} ${-a\\${b}x"));
+    }
+
+    @org.junit.Test
+    public void matchesLegacy() {
+        Random random = new Random(513);
+        String[] tokens = { "$", "{", "}", "\\", "-", "!", "a", "b", "|", " ",
+                "${a}", "${b}", "${-a}", "${-c}", "${!a}", "${!c}", "\\${a}",
+                "${x|a}" };
+        Map<String, String> map = toMap("a", "one", "x|a", "two");
+        expander.putAll(toMap("a", "one"));
+        expander.putAll("x", toMap("a", "two"), true);
+        StringBuilder sb = new StringBuilder();
+        String expected, actual;
+        for (int i = 0; i < 20000; i++) {
+            sb.setLength(0);
+            for (int j = random.nextInt(12); j > 0; j--)
+                sb.append(tokens[random.nextInt(tokens.length)]);
+            try {
+                expected = legacyExpand(
+                        Expander.PairedDelims.CURLY, map, sb.toString());
+            } catch (IllegalArgumentException iae) {
+                expected = "<THROWS>";
+            }
+            try {
+                actual = expander.expandToString(sb);
+            } catch (IllegalArgumentException iae) {
+                actual = "<THROWS>";
+            }
+            assertEquals(sb.toString(), expected, actual);
+        }
+    }
 }
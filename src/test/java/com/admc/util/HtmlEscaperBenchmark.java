@@ -0,0 +1,78 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.util;
+
+/**
+ * Compares the throughput of HtmlEscaper with the regex plus commons-lang
+ * implementation which it replaced, on Latin and on CJK text.
+ * <p>
+ * Not a unit test.  Run with the test classpath:
+ * </p><pre>
+ *   java com.admc.util.HtmlEscaperBenchmark [iterations]
+ * </pre>
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class HtmlEscaperBenchmark {
+    private static final String LATIN = "The quick brown fox & the lazy dog "
+            + "<em>jumped</em> over &quot;fences&quot;; caf\u00e9 na\u00efve. ";
+    private static final String CJK = "\u65e5\u672c\u8a9e\u306e\u6587\u7ae0"
+            + "\u3068 <\u30bf\u30b0> & \u6f22\u5b57\u3001\u304b\u306a\u3002 ";
+    private static final int WARMUP_ITERATIONS = 20000;
+
+    private static String corpus(String unit) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20; i++) sb.append(unit);
+        return sb.toString();
+    }
+
+    /**
+     * @return ns per char of input, as the best of 5 rounds
+     */
+    private static double time(boolean legacy, String text, int iterations) {
+        long best = Long.MAX_VALUE;
+        long start;
+        int sink = 0;
+        for (int round = 0; round < 5; round++) {
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                sink += (legacy ? HtmlEscaperTest.legacyEscape(text)
+                        : HtmlEscaper.escape(text)).length();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (sink == 42) System.out.print("");  // Defeat dead code removal
+        return best / (double) iterations / text.length();
+    }
+
+    public static void main(String[] sa) {
+        int iterations = (sa.length > 0) ? Integer.parseInt(sa[0]) : 20000;
+        String[] names = { "Latin", "CJK" };
+        String[] texts = { corpus(LATIN), corpus(CJK) };
+        for (String text : texts) {
+            time(true, text, WARMUP_ITERATIONS);
+            time(false, text, WARMUP_ITERATIONS);
+        }
+        System.out.println("text     legacy ns/char  HtmlEscaper ns/char");
+        for (int i = 0; i < texts.length; i++)
+            System.out.println(String.format("%-8s %15.2f %20.2f", names[i],
+                    time(true, texts[i], iterations),
+                    time(false, texts[i], iterations)));
+    }
+}
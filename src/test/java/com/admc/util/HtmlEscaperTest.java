@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.admc.util;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class HtmlEscaperTest {
+    private static final Pattern EntityPattern = Pattern.compile("&(?=\\w+;)");
+
+    /**
+     * The implementation which HtmlEscaper replaced
+     */
+    static String legacyEscape(String s) {
+        return StringEscapeUtils.escapeHtml(
+                EntityPattern.matcher(s).replaceAll("\b")).replace('\b', '&');
+    }
+
+    @org.junit.Test
+    public void specials() {
+        assertEquals("a &lt;b&gt; &quot;c&quot; &amp; 'd'",
+                HtmlEscaper.escape("a <b> \"c\" & 'd'"));
+    }
+
+    @org.junit.Test
+    public void entities() {
+        assertEquals("&nbsp;&amp;&amp;; &x_1; &amp;#38; &amp;x",
+                HtmlEscaper.escape("&nbsp;&&; &x_1; &#38; &x"));
+    }
+
+    @org.junit.Test
+    public void nonAscii() {
+        String s = "caf\u00e9 \u00a7 \u65e5\u672c\u8a9e";
+        assertSame(s, HtmlEscaper.escape(s));
+    }
+
+    @org.junit.Test
+    public void appendable() throws IOException {
+        StringWriter sw = new StringWriter();
+        assertSame(sw, HtmlEscaper.escape(new StringBuilder("x<y"), sw));
+        assertEquals("x&lt;y", sw.toString());
+        assertEquals("pre x&gt;y", HtmlEscaper.escape(
+                "x>y", new StringBuilder("pre ")).toString());
+    }
+
+    /**
+     * Output must be the same as the legacy implementation for ASCII text.
+     */
+    @org.junit.Test
+    public void legacyAscii() {
+        String alphabet = "&;<>\"' a_1#\n";
+        Random random = new Random(1L);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.setLength(0);
+            for (int j = random.nextInt(20); j > 0; j--)
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            assertEquals(sb.toString(), legacyEscape(sb.toString()),
+                    HtmlEscaper.escape(sb));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011 Axis Data Management Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.admc.util;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * A JUnit unit test.
+ *
+ * @author Blaine Simpson (blaine dot simpson at admc dot com)
+ * @since 1.4.0
+ */
+public class IOUtilTest {
+    private static void assertDecodes(String s) throws IOException {
+        File file = new File("build/test-results/ioutil.txt");
+        file.getParentFile().mkdirs();
+        FileUtils.writeStringToFile(file, s, "UTF-8");
+        try {
+            assertEquals(s, IOUtil.toString(file));
+            assertEquals(s,
+                    IOUtil.toStringBuilder(new FileInputStream(file))
+                    .toString());
+            char[] reuse = new char[(int) file.length()];
+            CharBuffer cb = IOUtil.toCharBuffer(file, reuse);
+            assertSame(reuse, cb.array());
+            assertEquals(s, cb.toString());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @org.junit.Test
+    public void small() throws IOException {
+        assertDecodes("one\r\ntwo \u00e9\u00df\u20ac \ud834\udd1e\n");
+    }
+
+    @org.junit.Test
+    public void mapped() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < IOUtil.MAP_THRESHOLD)
+            sb.append("line \u00e9\u20ac\ud834\udd1e ").append(sb.length())
+                    .append('\n');
+        assertDecodes(sb.toString());
+    }
+
+    @org.junit.Test
+    public void empty() throws IOException {
+        assertDecodes("");
+    }
+
+    private static String filter(String s, boolean doClean) {
+        char[] buf = s.toCharArray();
+        return new String(buf, 0,
+                IOUtil.filterControlChars(buf, 0, buf.length, doClean, 0));
+    }
+
+    @org.junit.Test
+    public void crLfs() {
+        assertEquals("one\ntwo\n\tthree\n",
+                filter("one\r\ntwo\r\n\tthree\r\n", false));
+        assertEquals("", filter("\r\r\r\r\u0001\r", true));
+    }
+
+    @org.junit.Test
+    public void clean() {
+        assertEquals("a\nbc", filter("\u0000a\r\n\u0007b\u001bc\u007f", true));
+        char[] buf = "xx\ra\rb".toCharArray();
+        assertEquals(4, IOUtil.filterControlChars(buf, 2, 4, true, 0));
+        assertEquals("xxab", new String(buf, 0, 4));
+    }
+
+    @org.junit.Test
+    public void validate() {
+        try {
+            filter("one\r\ntwo\u0007", false);
+            fail("Illegal char not rejected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue(iae.getMessage(),
+                    iae.getMessage().endsWith("position 8"));
+        }
+    }
+}